@@ -0,0 +1,83 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import players.MoveGenerator;
+import tilegame.BitBoard;
+import tilegame.TileGame;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class BitBoardBenchmark {
+
+    /*
+     * The BitBoard versions of BoardBenchmark's play, score and flip
+     * benchmarks, to compare against TileGame and CompactBoard on the
+     * same positions, including an 8x8 board that fills all 64 bits.
+     * benchmarks.BitBoardCheck checks that the two boards play alike.
+     */
+
+    @Param({"2x2x4", "3x3x10", "5x5x26", "8x8x96"})
+    public String board;
+
+    @Param({"opening", "midgame", "endgame"})
+    public String phase;
+
+    private BitBoard bits;
+    private int cols;
+    private int[] moves;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TileGame position = Positions.create(Positions.parse(board), phase);
+        bits = position.toBitBoard();
+        cols = position.cols;
+        moves = Positions.sampleMoves(position);
+    }
+
+    @Benchmark
+    public int playUndo() {
+        int move = nextMove();
+        bits.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+        int score = bits.getScore();
+        bits.undo();
+        return score;
+    }
+
+    @Benchmark
+    public int getScore() {
+        return bits.getScore();
+    }
+
+    @Benchmark
+    public int countFlips() {
+        int move = nextMove();
+        int cell = MoveGenerator.row(move) * cols + MoveGenerator.col(move);
+        return Long.bitCount(bits.getFlipMask(cell, MoveGenerator.cost(move)));
+    }
+
+    /*
+    The next of the sample moves, cycling back to the first
+     */
+    private int nextMove() {
+        int move = moves[next];
+        next = next + 1 == moves.length ? 0 : next + 1;
+        return move;
+    }
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import players.Move;
+import players.MoveGenerator;
+import players.MoveList;
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    /*
+     * Throughput of the board operations the searches spend their time
+     * in, on every board and phase of Positions, plus the 8x8 board
+     * of BitBoardBenchmark to compare against. Benchmarks that play
+     * a move cycle through Positions.sampleMoves, one move per call.
+     */
+
+    @Param({"2x2x4", "3x3x10", "5x5x26", "8x8x96"})
+    public String board;
+
+    @Param({"opening", "midgame", "endgame"})
+    public String phase;
+
+    private TileGame position;
+    private CompactBoard compact;
+    private int[] moves;
+    private int[] buffer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        position = Positions.create(Positions.parse(board), phase);
+        compact = position.toCompactBoard();
+        moves = Positions.sampleMoves(position);
+        buffer = new int[MoveGenerator.capacity(position.rows, position.cols, position.getPlayerPool())];
+    }
+
+    @Benchmark
+    public TileGame copy() {
+        return position.copy();
+    }
+
+    @Benchmark
+    public TileGame copyAndPlay() {
+        int move = nextMove();
+        return position.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+    }
+
+    @Benchmark
+    public int getScore() {
+        return position.getScore();
+    }
+
+    @Benchmark
+    public boolean isGameForfeitable() {
+        return position.isGameForfeitable();
+    }
+
+    @Benchmark
+    public int compactPlayUndo() {
+        int move = nextMove();
+        compact.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+        int score = compact.getScore();
+        compact.undo();
+        return score;
+    }
+
+    @Benchmark
+    public int countFlips() {
+        int move = nextMove();
+        int player = position.turn;
+        int value = MoveGenerator.cost(move);
+        Topology topology = position.getTopology();
+        int cell = MoveGenerator.row(move) * position.cols + MoveGenerator.col(move);
+        int count = 0;
+        for (int i = 0, n = topology.getNeighbourCount(cell); i < n; i++) {
+            int raw = position.getRaw(topology.getNeighbour(cell, i));
+            if (player == TileGame.PLAYER1 ? raw < -1 && -1 - raw < value : raw > 1 && raw - 1 < value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void moveIterator(Blackhole blackhole) {
+        for (Move move : new MoveList(position)) {
+            blackhole.consume(move);
+        }
+    }
+
+    @Benchmark
+    public int moveGenerator() {
+        return MoveGenerator.generate(position, position.turn, Integer.MAX_VALUE, buffer);
+    }
+
+    /*
+    The next of the sample moves, cycling back to the first
+     */
+    private int nextMove() {
+        int move = moves[next];
+        next = next + 1 == moves.length ? 0 : next + 1;
+        return move;
+    }
+}
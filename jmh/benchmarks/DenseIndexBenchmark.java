@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import solver.DenseIndex;
+import tilegame.CompactBoard;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class DenseIndexBenchmark {
+
+    /*
+     * Ranking and unranking positions. Only the boards whose positions
+     * fit a DenseIndex are benchmarked.
+     */
+
+    @Param({"2x2x4", "3x3x10"})
+    public String board;
+
+    @Param({"opening", "midgame", "endgame"})
+    public String phase;
+
+    private DenseIndex index;
+    private CompactBoard position;
+    private long rank;
+
+    @Setup
+    public void setUp() {
+        int[] size = Positions.parse(board);
+        index = new DenseIndex(size[0], size[1], size[2]);
+        position = Positions.create(size, phase).toCompactBoard();
+        rank = index.rank(position);
+    }
+
+    @Benchmark
+    public long rank() {
+        return index.rank(position);
+    }
+
+    @Benchmark
+    public CompactBoard unrank() {
+        return index.unrank(rank);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import players.ABSearchPlayer;
+import tilegame.TileGame;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    /*
+     * Full searches with ABSearchPlayer, to Positions.searchDepth. Next
+     * to the searches per second, the nodes counter reports the nodes
+     * searched per second.
+     */
+
+    @Param({"2x2x4", "3x3x10", "5x5x26"})
+    public String board;
+
+    @Param({"opening", "midgame", "endgame"})
+    public String phase;
+
+    private TileGame position;
+    private ABSearchPlayer alphaBeta;
+    private ABSearchPlayer pvs;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        position = Positions.create(Positions.parse(board), phase);
+        alphaBeta = new ABSearchPlayer(position.turn, Positions.searchDepth(position));
+        pvs = new ABSearchPlayer(position.turn, Positions.searchDepth(position));
+        pvs.setSearchMode(ABSearchPlayer.SEARCH_PVS);
+    }
+
+    @Benchmark
+    public void alphaBeta(Nodes nodes, Blackhole blackhole) {
+        blackhole.consume(Positions.quietly(alphaBeta, position));
+        nodes.nodes += alphaBeta.getNodeCount();
+    }
+
+    @Benchmark
+    public void pvs(Nodes nodes, Blackhole blackhole) {
+        blackhole.consume(Positions.quietly(pvs, position));
+        nodes.nodes += pvs.getNodeCount();
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import players.MoveGenerator;
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class TopologyBenchmark {
+
+    /*
+     * Playing moves on every topology. The neighbour tables are meant
+     * to make every topology play as fast as the square grid, so the
+     * scores should only differ by the number of neighbours.
+     */
+
+    @Param({"square", "torus", "hex", "eight"})
+    public String topology;
+
+    @Param({"2x2x4", "3x3x10", "5x5x26"})
+    public String board;
+
+    @Param({"opening", "midgame", "endgame"})
+    public String phase;
+
+    private TileGame position;
+    private CompactBoard compact;
+    private int[] moves;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        position = Positions.withTopology(Positions.create(Positions.parse(board), phase), Topology.parse(topology));
+        compact = position.toCompactBoard();
+        moves = Positions.sampleMoves(position);
+    }
+
+    @Benchmark
+    public TileGame copyAndPlay() {
+        int move = nextMove();
+        return position.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+    }
+
+    @Benchmark
+    public int compactPlayUndo() {
+        int move = nextMove();
+        compact.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+        int score = compact.getScore();
+        compact.undo();
+        return score;
+    }
+
+    /*
+    The next of the sample moves, cycling back to the first
+     */
+    private int nextMove() {
+        int move = moves[next];
+        next = next + 1 == moves.length ? 0 : next + 1;
+        return move;
+    }
+}
@@ -1,6 +1,11 @@
 import players.*;
+import records.GameRecord;
+import records.GameRecordWriter;
 import tilegame.TileGame;
 
+import java.io.File;
+import java.io.IOException;
+
 public class Main {
 
     /*
@@ -12,13 +17,17 @@ public class Main {
     private static final int BOT_VS_BOT = 2;
     private static final int SOLVER = 3;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         // Set the game mode here:
         final int mode = PLAYER_VS_PLAYER;
 
+        // Set to a file name to add every game to it (a .txt name writes text records)
+        final String recordFile = null;
+
 
         TileGame game = new TileGame(3, 3, 10);
+        GameRecord record = new GameRecord(game.rows, game.cols, game.getPlayerPool());
 
         Player p1;
         Player p2;
@@ -33,8 +42,16 @@ public class Main {
             p1 = new ABSearchPlayer(TileGame.PLAYER1);
             p2 = new ABSearchPlayer(TileGame.PLAYER2);
         } else if (mode == SOLVER) {
-            p1 = new ABSearchPlayer(TileGame.PLAYER1, game.rows * game.cols);
-            p2 = new ABSearchPlayer(TileGame.PLAYER2, game.rows * game.cols);
+            ABSearchPlayer s1 = new ABSearchPlayer(TileGame.PLAYER1, game.rows * game.cols);
+            ABSearchPlayer s2 = new ABSearchPlayer(TileGame.PLAYER2, game.rows * game.cols);
+
+            // Only one player searches at a time, so one table is enough
+            TranspositionTable table = new TranspositionTable(1 << 22);
+            s1.setTranspositionTable(table);
+            s2.setTranspositionTable(table);
+
+            p1 = s1;
+            p2 = s2;
         }
 
         while (!game.isGameForfeitable()) {
@@ -54,7 +71,9 @@ public class Main {
 
             // Get the next move
             Move move = current_player.getNextMove(game.copy());
-            if (!move.apply(game)) {
+            if (move.apply(game)) {
+                record.add(move);
+            } else {
                 System.out.println(" ***** INVALID ENTRY ***** ");
             }
 
@@ -78,6 +97,14 @@ public class Main {
         } else if (winner == TileGame.NO_PLAYER) {
             System.out.println("Draw!");
         }
+
+        if (recordFile != null) {
+            File file = new File(recordFile);
+            record.setWinner(winner);
+            try (GameRecordWriter writer = new GameRecordWriter(file, GameRecordWriter.formatOf(file), true)) {
+                writer.write(record);
+            }
+        }
     }
 
 
@@ -0,0 +1,135 @@
+package benchmarks;
+
+import tilegame.BitBoard;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+public class BitBoardCheck {
+
+    /*
+     * Checks BitBoard against TileGame by playing the same random games
+     * on both, on every topology and on boards from 1x1 up to the full
+     * 64 cells (8x8, 1x64 and 4x16).
+     *
+     * Along the way BitBoard plays are randomly undone, and the board is
+     * copied or round-tripped through a TileGame. After every step the
+     * two boards must agree on every tile, the pools, the turn, the
+     * hash, the score and the end of the game, and every play must flip
+     * exactly the tiles getFlipMask predicted. Exits with status 1 on
+     * the first difference.
+     *
+     * Usage: BitBoardCheck [games per board] [seed]
+     */
+
+    private static final int[][] SIZES = {{1, 1}, {1, 5}, {2, 2}, {3, 3}, {4, 4}, {5, 5}, {8, 8}, {1, 64}, {4, 16}};
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 20110101L;
+
+        Random random = new Random(seed);
+        long steps = 0;
+        for (int topology = Topology.SQUARE; topology <= Topology.EIGHT_NEIGHBOUR; topology++) {
+            for (int[] size : SIZES) {
+                for (int g = 0; g < games; g++) {
+                    int pool = 1 + random.nextInt(BitBoard.MAX_POOL);
+                    try {
+                        steps += playOut(new TileGame(size[0], size[1], pool, topology), random);
+                    } catch (IllegalStateException e) {
+                        System.out.printf("%dx%dx%d %s, seed %d: %s%n",
+                                size[0], size[1], pool, Topology.name(topology), seed, e.getMessage());
+                        System.exit(1);
+                    }
+                }
+            }
+            System.out.printf("%s: ok%n", Topology.name(topology));
+        }
+        System.out.printf("%d steps checked, no differences%n", steps);
+    }
+
+    /*
+    Plays random steps on both boards until the game is finished,
+    comparing them after each. Returns the number of steps.
+     */
+    private static int playOut(TileGame game, Random random) {
+        BitBoard board = game.toBitBoard();
+        // The TileGame before each BitBoard play that can still be undone
+        ArrayDeque<TileGame> undo = new ArrayDeque<>();
+        int steps = 0;
+        compare(game, board);
+        while (!game.isGameFinished()) {
+            int action = random.nextInt(20);
+            if (action == 0 && !undo.isEmpty()) {
+                if (!board.undo()) {
+                    throw new IllegalStateException("undo found nothing to undo");
+                }
+                game = undo.pop();
+            } else if (action == 1) {
+                board = board.copy();
+            } else if (action == 2) {
+                board = new BitBoard(board.toTileGame());
+                undo.clear();
+            } else {
+                int row = random.nextInt(game.rows);
+                int col = random.nextInt(game.cols);
+                int value = 1 + random.nextInt(Integer.max(1, Integer.min(game.getPlayerPool(), 12)));
+                TileGame before = game.copy();
+                long flips = game.isPlayValid(row, col, value) ? board.getFlipMask(row * game.cols + col, value) : 0;
+                boolean played = game.play(row, col, value);
+                if (board.play(row, col, value) != played) {
+                    throw new IllegalStateException(String.format("play(%d, %d, %d) returned %b on the TileGame only",
+                            row, col, value, played));
+                }
+                if (played) {
+                    undo.push(before);
+                    checkFlips(before, game, row * game.cols + col, flips);
+                }
+            }
+            compare(game, board);
+            steps++;
+        }
+        return steps;
+    }
+
+    /*
+    Checks that the tiles that changed hands are the ones in the flip mask
+     */
+    private static void checkFlips(TileGame before, TileGame after, int played, long flips) {
+        for (int cell = 0; cell < before.rows * before.cols; cell++) {
+            boolean flipped = cell != played && Integer.signum(before.getRaw(cell)) != Integer.signum(after.getRaw(cell));
+            if (flipped != ((flips >>> cell & 1) != 0)) {
+                throw new IllegalStateException(String.format("getFlipMask %s cell %d%n%s",
+                        flipped ? "missed" : "wrongly included", cell, before));
+            }
+        }
+    }
+
+    /*
+    Checks that the boards hold the same position
+     */
+    private static void compare(TileGame game, BitBoard board) {
+        for (int cell = 0; cell < game.rows * game.cols; cell++) {
+            if (game.getRaw(cell) != board.getRaw(cell)) {
+                throw new IllegalStateException(String.format("cell %d is %d instead of %d%n%s",
+                        cell, board.getRaw(cell), game.getRaw(cell), game));
+            }
+        }
+        check(board.getPool(TileGame.PLAYER1) == game.getPlayerPool(TileGame.PLAYER1), "Player 1's pool", game);
+        check(board.getPool(TileGame.PLAYER2) == game.getPlayerPool(TileGame.PLAYER2), "Player 2's pool", game);
+        check(board.getTurn() == game.turn, "turn", game);
+        check(board.getHash() == game.getHash(), "hash", game);
+        check(board.getScore() == game.getScore(), "score", game);
+        check(board.countOpenTiles() == game.countOpenTiles(), "open tile count", game);
+        check(board.isGameFinished() == game.isGameFinished(), "isGameFinished", game);
+        check(board.isGameForfeitable() == game.isGameForfeitable(), "isGameForfeitable", game);
+    }
+
+    private static void check(boolean same, String what, TileGame game) {
+        if (!same) {
+            throw new IllegalStateException(String.format("%s differs%n%s", what, game));
+        }
+    }
+}
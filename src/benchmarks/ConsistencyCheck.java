@@ -0,0 +1,86 @@
+package benchmarks;
+
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.Random;
+
+public class ConsistencyCheck {
+
+    /*
+     * Checks TileGame's cached score, open tile count and hash against
+     * a full scan of the board (TileGame.checkConsistency) throughout
+     * random games, without relying on assertions being enabled.
+     *
+     * Games are played on every topology and on boards of up to 5x5.
+     * Along the way the game is randomly copied, edited with setTile
+     * and setPool, and round-tripped through a CompactBoard, and the
+     * board is checked after every step. Exits with status 1 on the
+     * first inconsistency.
+     *
+     * Usage: ConsistencyCheck [games per board] [seed]
+     */
+
+    private static final int MAX_SIZE = 5;
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 20110101L;
+
+        Random random = new Random(seed);
+        long steps = 0;
+        for (int topology = Topology.SQUARE; topology <= Topology.EIGHT_NEIGHBOUR; topology++) {
+            for (int rows = 1; rows <= MAX_SIZE; rows++) {
+                for (int cols = 1; cols <= MAX_SIZE; cols++) {
+                    for (int g = 0; g < games; g++) {
+                        int pool = 1 + random.nextInt(40);
+                        TileGame game = new TileGame(rows, cols, pool, topology);
+                        try {
+                            steps += playOut(game, random);
+                        } catch (IllegalStateException e) {
+                            System.out.printf("%s, seed %d: %s%n", game.getTopology(), seed, e.getMessage());
+                            System.out.println(game);
+                            System.exit(1);
+                        }
+                    }
+                }
+            }
+        }
+        System.out.printf("%d steps checked, no inconsistencies%n", steps);
+    }
+
+    /*
+    Plays random steps until the game is finished, checking the board
+    after each. Returns the number of steps.
+     */
+    private static int playOut(TileGame game, Random random) {
+        int steps = 0;
+        game.checkConsistency();
+        while (!game.isGameFinished()) {
+            int row = random.nextInt(game.rows);
+            int col = random.nextInt(game.cols);
+            int action = random.nextInt(20);
+            if (action == 0) {
+                game = game.copy();
+            } else if (action == 1) {
+                TileGame converted = game.toCompactBoard().toTileGame();
+                if (converted.getHash() != game.getHash() || converted.getTopology() != game.getTopology()) {
+                    throw new IllegalStateException("A CompactBoard round trip changed the position");
+                }
+                game = converted;
+            } else if (action == 2) {
+                int owner = random.nextInt(3) - 1;
+                game.setTile(row, col, owner, random.nextInt(10));
+            } else if (action == 3) {
+                int player = random.nextInt(2);
+                game.setPool(player, Integer.max(0, game.getPlayerPool(player) - 1));
+            } else {
+                int value = 1 + random.nextInt(Integer.max(1, Integer.min(game.getPlayerPool(), 8)));
+                game.play(row, col, value);
+            }
+            game.checkConsistency();
+            steps++;
+        }
+        return steps;
+    }
+}
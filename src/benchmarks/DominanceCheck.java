@@ -0,0 +1,124 @@
+package benchmarks;
+
+import players.MoveGenerator;
+import solver.EndgameSolver;
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.HashMap;
+
+public class DominanceCheck {
+
+    /*
+     * Checks that dominance pruning (MoveGenerator.generateNonDominated,
+     * used by ABSearchPlayer.setDominancePruning and EndgameSolver)
+     * never changes a game value.
+     *
+     * For every topology and every small board, every position
+     * reachable from the start is solved exhaustively twice, once
+     * searching every legal move and once only the non-dominated ones,
+     * and the two values of every position must match. The start
+     * position's value is also checked against EndgameSolver. Exits
+     * with status 1 on the first mismatch.
+     *
+     * Usage: DominanceCheck [max cells] [max pool]
+     */
+
+    private final CompactBoard board;
+    private final int[][] moves;
+    private final HashMap<Long, Integer> full = new HashMap<>();
+    private final HashMap<Long, Integer> pruned = new HashMap<>();
+
+    private DominanceCheck(CompactBoard board) {
+        this.board = board;
+        int capacity = MoveGenerator.capacity(board.rows, board.cols,
+                Integer.max(board.getPool(TileGame.PLAYER1), board.getPool(TileGame.PLAYER2)));
+        this.moves = new int[board.cells + 1][capacity];
+    }
+
+    public static void main(String[] args) {
+        int maxCells = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int maxPool = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+        long positions = 0;
+        for (int topology = Topology.SQUARE; topology <= Topology.EIGHT_NEIGHBOUR; topology++) {
+            for (int rows = 1; rows <= maxCells; rows++) {
+                for (int cols = 1; rows * cols <= maxCells; cols++) {
+                    for (int pool = 1; pool <= maxPool; pool++) {
+                        TileGame game = new TileGame(rows, cols, pool, topology);
+                        DominanceCheck check = new DominanceCheck(game.toCompactBoard());
+                        int value = check.compare(0);
+                        int solved = new EndgameSolver(1 << 12).solve(game);
+                        if (solved != value) {
+                            fail(game, String.format("EndgameSolver found %+d instead of %+d", solved, value));
+                        }
+                        positions += check.full.size();
+                    }
+                }
+            }
+            System.out.printf("%s: ok%n", Topology.name(topology));
+        }
+        System.out.printf("%d positions checked, no values changed by pruning%n", positions);
+    }
+
+    /*
+    Solves the board both ways, checking every position on the way.
+    Returns the value.
+     */
+    private int compare(int ply) {
+        if (board.isGameForfeitable()) {
+            return board.getScore();
+        }
+        long key = board.getHash();
+        Integer known = full.get(key);
+        if (known != null) {
+            return known;
+        }
+
+        int value = search(ply, false);
+        int prunedValue = solvePruned(ply);
+        if (value != prunedValue) {
+            fail(board.toTileGame(), String.format("pruned value %+d, full value %+d", prunedValue, value));
+        }
+        return value;
+    }
+
+    /*
+    Minimax over every legal move (checking each child with compare) or
+    over the non-dominated moves only
+     */
+    private int search(int ply, boolean prune) {
+        int[] list = moves[ply];
+        int count = prune
+                ? MoveGenerator.generateNonDominated(board, MoveGenerator.ALL, list)
+                : MoveGenerator.generate(board, Integer.MAX_VALUE, list);
+        boolean maximize = board.getTurn() == TileGame.PLAYER1;
+        int best = maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            board.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+            int value = prune ? solvePruned(ply + 1) : compare(ply + 1);
+            board.undo();
+            best = maximize ? Integer.max(best, value) : Integer.min(best, value);
+        }
+        (prune ? pruned : full).put(board.getHash(), best);
+        return best;
+    }
+
+    /*
+    The value of the board searching only non-dominated moves
+     */
+    private int solvePruned(int ply) {
+        if (board.isGameForfeitable()) {
+            return board.getScore();
+        }
+        Integer known = pruned.get(board.getHash());
+        return known != null ? known : search(ply, true);
+    }
+
+    private static void fail(TileGame game, String message) {
+        System.out.printf("%s: %s%n%s%n", game.getTopology(), message, game);
+        System.exit(1);
+    }
+}
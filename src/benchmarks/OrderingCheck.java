@@ -0,0 +1,119 @@
+package benchmarks;
+
+import players.ABSearchPlayer;
+import players.ScoreHeuristic;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.Random;
+
+public class OrderingCheck {
+
+    /*
+     * Checks that move ordering never changes what a search finds,
+     * including on boards whose pools are too big for a cost to fit in
+     * a byte.
+     *
+     * On every topology, random positions on small boards with pools of
+     * 256 and more are searched with each ordering and compared against
+     * the same search without ordering. Each player searches twice, so
+     * the second search sorts by the history the first one left. Search
+     * values must match exactly, in both search modes. Exits with status
+     * 1 on the first mismatch.
+     *
+     * Usage: OrderingCheck [positions per board] [seed]
+     */
+
+    private static final int[][] BOARDS = {{1, 3}, {1, 4}, {2, 2}};
+    private static final int[] POOLS = {256, 300, 600};
+    private static final int[] ORDERINGS = {
+            ABSearchPlayer.ORDER_FLIPS,
+            ABSearchPlayer.ORDER_HISTORY,
+            ABSearchPlayer.ORDER_KILLERS | ABSearchPlayer.ORDER_HISTORY | ABSearchPlayer.ORDER_FLIPS};
+    private static final int DEPTH = 2;
+
+    public static void main(String[] args) {
+        int perBoard = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 20110101L;
+
+        Random random = new Random(seed);
+        int searches = 0;
+
+        // P2 can only flip (0, 0) by spending more than 255, or its whole pool
+        TileGame known = new TileGame(2, 2, 600);
+        known.play(0, 0, 298);
+        searches += compare(known);
+
+        for (int topology = Topology.SQUARE; topology <= Topology.EIGHT_NEIGHBOUR; topology++) {
+            for (int[] board : BOARDS) {
+                for (int pool : POOLS) {
+                    for (int i = 0; i < perBoard; i++) {
+                        TileGame game = new TileGame(board[0], board[1], pool, topology);
+                        int plies = random.nextInt(game.countOpenTiles() - 1);
+                        for (int ply = 0; ply < plies; ply++) {
+                            playRandom(game, random);
+                        }
+                        searches += compare(game);
+                    }
+                }
+            }
+            System.out.printf("%s: ok%n", Topology.name(topology));
+        }
+        System.out.printf("%d searches checked, no values changed by ordering%n", searches);
+    }
+
+    /*
+    Searches the position with every ordering and in both modes.
+    Returns the number of searches compared.
+     */
+    private static int compare(TileGame game) {
+        int searches = 0;
+        for (int mode = ABSearchPlayer.SEARCH_ALPHA_BETA; mode <= ABSearchPlayer.SEARCH_PVS; mode++) {
+            float[] expected = search(game, mode, 0);
+            for (int ordering : ORDERINGS) {
+                float[] values = search(game, mode, ordering);
+                for (int i = 0; i < values.length; i++) {
+                    if (Float.compare(values[i], expected[i]) != 0) {
+                        System.out.printf("%s, mode %d, ordering %d, search %d: %s instead of %s%n%s%n",
+                                game.getTopology(), mode, ordering, i + 1, values[i], expected[i], game);
+                        System.exit(1);
+                    }
+                }
+                searches += values.length;
+            }
+        }
+        return searches;
+    }
+
+    /*
+    The values of two searches of the position by the same player
+     */
+    private static float[] search(TileGame game, int mode, int ordering) {
+        ABSearchPlayer player = new ABSearchPlayer(game.turn, DEPTH, new ScoreHeuristic());
+        player.setVerbose(false);
+        player.setSearchMode(mode);
+        player.setMoveOrdering(ordering);
+        float[] values = new float[2];
+        for (int i = 0; i < values.length; i++) {
+            player.getNextMove(game);
+            values[i] = player.getSearchValue();
+        }
+        return values;
+    }
+
+    /*
+    Plays a random legal move, mostly expensive enough to need more than a byte
+     */
+    private static void playRandom(TileGame game, Random random) {
+        int pool = game.getPlayerPool();
+        while (true) {
+            int row = random.nextInt(game.rows);
+            int col = random.nextInt(game.cols);
+            int cost = 1 + random.nextInt(Integer.max(1, pool / 2));
+            if (game.isPlayValid(row, col, cost)) {
+                game.play(row, col, cost);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package benchmarks;
+
+import players.ABSearchPlayer;
+import players.Move;
+import players.MoveGenerator;
+import tilegame.TileGame;
+
+import java.util.Random;
+
+public final class Positions {
+
+    /**
+     * Representative positions used by the benchmarks.
+     * Positions are made by seeded random play, so every run
+     * benchmarks exactly the same boards.
+     */
+
+    public static final int[][] BOARDS = {{2, 2, 4}, {3, 3, 10}, {5, 5, 26}};
+    public static final String[] PHASES = {"opening", "midgame", "endgame"};
+
+    private static final long SEED = 20110101L;
+
+    private Positions() {
+    }
+
+    /**
+     * @param board one of BOARDS, as {rows, cols, pool}
+     * @return the board's name, like "3x3x10"
+     */
+    public static String name(int[] board) {
+        return String.format("%dx%dx%d", board[0], board[1], board[2]);
+    }
+
+    /**
+     * @param name a board name, like "3x3x10"
+     * @return the board as {rows, cols, pool}
+     */
+    public static int[] parse(String name) {
+        String[] parts = name.split("x");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid board " + name);
+        }
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+    }
+
+    /**
+     * Builds a position for the given game phase.
+     * The opening has one tile claimed, the midgame about half
+     * the tiles, and the endgame all but two.
+     * @param board one of BOARDS, as {rows, cols, pool}
+     * @param phase one of PHASES
+     * @return a position that isn't forfeitable yet
+     */
+    public static TileGame create(int[] board, String phase) {
+        int rows = board[0];
+        int cols = board[1];
+        int pool = board[2];
+        int cells = rows * cols;
+
+        int claimed;
+        if (phase.equals("opening")) {
+            claimed = 1;
+        } else if (phase.equals("midgame")) {
+            claimed = cells / 2;
+        } else if (phase.equals("endgame")) {
+            claimed = Integer.max(1, cells - 2);
+        } else {
+            throw new IllegalArgumentException("Unknown phase " + phase);
+        }
+
+        // Spend roughly evenly, so neither player runs dry before the end
+        int typical = Integer.max(1, 2 * pool / cells);
+
+        Random random = new Random(SEED + cells * 31L + claimed);
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            TileGame game = new TileGame(rows, cols, pool);
+            while (game.countClaimedTiles() < claimed && !game.isGameForfeitable()) {
+                int r = random.nextInt(rows);
+                int c = random.nextInt(cols);
+                int value = 1 + random.nextInt(Integer.min(game.getPlayerPool(), 2 * typical));
+                game.play(r, c, value);
+            }
+            if (!game.isGameForfeitable()) {
+                return game;
+            }
+        }
+        throw new IllegalStateException("Unable to build a " + phase + " position for " + name(board));
+    }
+
+    /**
+     * @param game a position
+     * @param topology the kind of board to move it to, such as Topology.HEX
+     * @return the same tiles, pools and turn on a board of the given topology
+     */
+    public static TileGame withTopology(TileGame game, int topology) {
+        TileGame result = new TileGame(game.rows, game.cols, 0, topology);
+        for (int r = 0; r < game.rows; r++) {
+            for (int c = 0; c < game.cols; c++) {
+                result.setTile(r, c, game.getTileOwner(r, c), game.getTileValue(r, c));
+            }
+        }
+        result.setPool(TileGame.PLAYER1, game.getPlayerPool(TileGame.PLAYER1));
+        result.setPool(TileGame.PLAYER2, game.getPlayerPool(TileGame.PLAYER2));
+        result.turn = game.turn;
+        return result;
+    }
+
+    /**
+     * @param position the position being searched
+     * @return a search depth that takes a fraction of a second
+     */
+    public static int searchDepth(TileGame position) {
+        int cells = position.rows * position.cols;
+        if (cells <= 4) {
+            return 4;
+        } else if (cells <= 9) {
+            return 3;
+        } else {
+            return 2;
+        }
+    }
+
+    /**
+     * Runs a search without console output, so printing isn't timed.
+     * @param search the search to run
+     * @param position the position to search, which isn't changed
+     * @return the chosen move
+     */
+    public static Move quietly(ABSearchPlayer search, TileGame position) {
+        search.setVerbose(false);
+        return search.getNextMove(position.copy());
+    }
+
+    /**
+     * @param position a position
+     * @return up to 16 legal moves, encoded and spread across the move list
+     */
+    public static int[] sampleMoves(TileGame position) {
+        int[] buffer = new int[MoveGenerator.capacity(position.rows, position.cols, position.getPlayerPool())];
+        int count = MoveGenerator.generate(position, position.turn, Integer.MAX_VALUE, buffer);
+        int[] result = new int[Integer.min(16, count)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buffer[(int) ((long) i * count / result.length)];
+        }
+        return result;
+    }
+}
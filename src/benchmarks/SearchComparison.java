@@ -0,0 +1,92 @@
+package benchmarks;
+
+import players.ABSearchPlayer;
+import players.Move;
+import players.TranspositionTable;
+import tilegame.TileGame;
+
+import java.util.Objects;
+
+public class SearchComparison {
+
+    /*
+     * Compares the PVS search against the alpha-beta search on the
+     * benchmark positions, with and without move ordering and a
+     * transposition table. For each position it prints the nodes and
+     * time each search took, and flags positions where the chosen
+     * moves differ.
+     *
+     * Usage: SearchComparison [extra depth]
+     */
+
+    private static final String[] NAMES = {"alpha-beta", "pvs", "alpha-beta+order+tt", "pvs+order+tt"};
+
+    public static void main(String[] args) {
+        int extraDepth = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+
+        long[] totalNodes = new long[NAMES.length];
+        long[] totalMillis = new long[NAMES.length];
+        int mismatches = 0;
+
+        System.out.printf("%-8s %-8s %5s", "board", "phase", "depth");
+        for (String name : NAMES) {
+            System.out.printf(" %22s", name);
+        }
+        System.out.println();
+
+        for (int[] board : Positions.BOARDS) {
+            for (String phase : Positions.PHASES) {
+                TileGame position = Positions.create(board, phase);
+                int depth = Positions.searchDepth(position) + extraDepth;
+
+                System.out.printf("%-8s %-8s %5d", Positions.name(board), phase, depth);
+                Move[] chosen = new Move[NAMES.length];
+                for (int i = 0; i < NAMES.length; i++) {
+                    ABSearchPlayer search = create(i, position.turn, depth);
+
+                    long start = System.nanoTime();
+                    chosen[i] = Positions.quietly(search, position);
+                    long millis = (System.nanoTime() - start) / 1000000;
+
+                    totalNodes[i] += search.getNodeCount();
+                    totalMillis[i] += millis;
+                    System.out.printf(" %12d %6d ms", search.getNodeCount(), millis);
+                }
+
+                for (int i = 1; i < NAMES.length; i++) {
+                    if (!Objects.equals(String.valueOf(chosen[i]), String.valueOf(chosen[0]))) {
+                        System.out.printf("  MISMATCH %s: %s vs %s", NAMES[i], chosen[i], chosen[0]);
+                        mismatches++;
+                    }
+                }
+                System.out.println();
+            }
+        }
+
+        System.out.printf("%-23s", "total");
+        for (int i = 0; i < NAMES.length; i++) {
+            System.out.printf(" %12d %6d ms", totalNodes[i], totalMillis[i]);
+        }
+        System.out.println();
+        for (int i = 1; i < NAMES.length; i++) {
+            System.out.printf("%s searched %.1f%% of alpha-beta's nodes%n",
+                    NAMES[i], 100.0 * totalNodes[i] / totalNodes[0]);
+        }
+        System.out.printf("%d mismatched moves%n", mismatches);
+    }
+
+    /*
+    Builds the i-th search configuration in NAMES
+     */
+    private static ABSearchPlayer create(int i, int player, int depth) {
+        ABSearchPlayer search = new ABSearchPlayer(player, depth);
+        if (i % 2 == 1) {
+            search.setSearchMode(ABSearchPlayer.SEARCH_PVS);
+        }
+        if (i >= 2) {
+            search.setMoveOrdering(ABSearchPlayer.ORDER_ALL);
+            search.setTranspositionTable(new TranspositionTable(1 << 20));
+        }
+        return search;
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import players.ABSearchPlayer;
+import players.Move;
+import players.TranspositionTable;
+import tilegame.TileGame;
+
+import java.util.Objects;
+
+public class SmpScaling {
+
+    /*
+     * Measures how the Lazy SMP search scales with the number of
+     * threads. For 3x3x10 and 5x5x26, every phase in Positions.PHASES
+     * is searched to a fixed depth with PVS, move ordering and a fresh
+     * transposition table, at 1, 2, 4, ... threads up to the maximum.
+     * It prints the time and nodes per second at each thread count,
+     * the speedup over 1 thread, and how many chosen moves differ from
+     * the 1-thread search's. Each time is the best of several runs,
+     * since Lazy SMP searches vary from run to run.
+     *
+     * Usage: SmpScaling [max threads] [extra depth] [runs]
+     */
+
+    private static final int[][] BOARDS = {{3, 3, 10}, {5, 5, 26}};
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int extraDepth = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        System.out.printf("%d processors available%n", Runtime.getRuntime().availableProcessors());
+        for (int[] board : BOARDS) {
+            System.out.printf("%n%s, depth +%d%n", Positions.name(board), extraDepth);
+            System.out.printf("%7s %10s %14s %8s %6s%n", "threads", "ms", "nodes/s", "speedup", "moved");
+
+            TileGame[] positions = new TileGame[Positions.PHASES.length];
+            for (int p = 0; p < positions.length; p++) {
+                positions[p] = Positions.create(board, Positions.PHASES[p]);
+            }
+
+            long baseNanos = 0;
+            Move[] baseMoves = null;
+            for (int threads = 1; ; threads = Integer.min(2 * threads, maxThreads)) {
+                long bestNanos = Long.MAX_VALUE;
+                long nodes = 0;
+                Move[] moves = null;
+                for (int run = 0; run < runs; run++) {
+                    Move[] chosen = new Move[positions.length];
+                    long runNodes = 0;
+                    long start = System.nanoTime();
+                    for (int p = 0; p < positions.length; p++) {
+                        TileGame position = positions[p];
+                        ABSearchPlayer search = create(position, threads, Positions.searchDepth(position) + extraDepth);
+                        chosen[p] = Positions.quietly(search, position);
+                        runNodes += search.getNodeCount();
+                        // Shuts the search's thread pool down
+                        search.setThreads(1);
+                    }
+                    long nanos = System.nanoTime() - start;
+                    if (nanos < bestNanos) {
+                        bestNanos = nanos;
+                        nodes = runNodes;
+                        moves = chosen;
+                    }
+                }
+
+                if (threads == 1) {
+                    baseNanos = bestNanos;
+                    baseMoves = moves;
+                }
+                int moved = 0;
+                for (int p = 0; p < moves.length; p++) {
+                    if (!Objects.equals(String.valueOf(moves[p]), String.valueOf(baseMoves[p]))) {
+                        moved++;
+                    }
+                }
+                System.out.printf("%7d %10d %14.0f %7.2fx %6d%n", threads, bestNanos / 1000000,
+                        nodes / (bestNanos / 1e9), (double) baseNanos / bestNanos, moved);
+                if (threads == maxThreads) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static ABSearchPlayer create(TileGame position, int threads, int depth) {
+        ABSearchPlayer search = new ABSearchPlayer(position.turn, depth);
+        search.setSearchMode(ABSearchPlayer.SEARCH_PVS);
+        search.setMoveOrdering(ABSearchPlayer.ORDER_ALL);
+        search.setTranspositionTable(new TranspositionTable(1 << 20));
+        search.setParallelMode(ABSearchPlayer.PARALLEL_LAZY_SMP);
+        search.setThreads(threads);
+        return search;
+    }
+}
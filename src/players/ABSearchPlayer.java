@@ -1,7 +1,19 @@
 package players;
 
+import solver.EndgameSolver;
+import tilegame.Symmetry;
 import tilegame.TileGame;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ABSearchPlayer extends Player implements Heuristic {
 
     Heuristic heuristic = this;
@@ -16,6 +28,133 @@ public class ABSearchPlayer extends Player implements Heuristic {
      */
     float gamma = 1.0f;
 
+    /**
+     * Optional transposition table shared by every search this player
+     * makes. Positions reached through different move orders are only
+     * searched once. Set to null to disable.
+     */
+    TranspositionTable transpositionTable = null;
+
+    /**
+     * The number of threads used to search, see setParallelMode.
+     */
+    int threads = 1;
+    private ForkJoinPool forkJoinPool = null;
+
+    // Ways to search with more than 1 thread, see setParallelMode
+    /** Search root moves in parallel, sharing the best value found so far as their bound */
+    public static final int PARALLEL_ROOT = 0;
+    /** Run helper searches of the whole tree that share the transposition table */
+    public static final int PARALLEL_LAZY_SMP = 1;
+
+    /**
+     * How searches use more than 1 thread, PARALLEL_ROOT or PARALLEL_LAZY_SMP.
+     */
+    int parallelMode = PARALLEL_ROOT;
+
+    // Depth of the main search's current iteration, which Lazy SMP helpers follow
+    private volatile int smpDepth;
+
+    // Tasks of the running Lazy SMP helpers
+    private final List<Future<?>> helperTasks = new ArrayList<>();
+
+    /**
+     * The time budget per move in milliseconds, or 0 to search
+     * to a fixed maxDepth.
+     */
+    long timeBudget = 0;
+
+    private static final int ABORTED = -2;
+
+    // Move ordering flags, see setMoveOrdering
+    /** Search the best move stored in the transposition table first */
+    public static final int ORDER_PV = 1;
+    /** Search moves that recently caused a cutoff at the same depth next */
+    public static final int ORDER_KILLERS = 2;
+    /** Prefer (cell, cost) pairs that have caused cutoffs in the past */
+    public static final int ORDER_HISTORY = 4;
+    /** Prefer moves that flip more tiles */
+    public static final int ORDER_FLIPS = 8;
+    public static final int ORDER_ALL = ORDER_PV | ORDER_KILLERS | ORDER_HISTORY | ORDER_FLIPS;
+
+    /**
+     * The ORDER_* flags used to order moves inside the search.
+     * 0 searches moves in MoveGenerator's order.
+     */
+    int moveOrdering = 0;
+
+    /**
+     * When set, positions that are rotations or reflections of each
+     * other share transposition table entries, and root moves that
+     * lead to such positions are only searched once.
+     */
+    boolean symmetryReduction = false;
+    private Symmetry symmetry = null;
+
+    /**
+     * When set, only MoveGenerator.generateNonDominated's moves are
+     * searched. Other moves spend more pool for the same effect.
+     */
+    boolean dominancePruning = true;
+
+    // Search algorithms, see setSearchMode
+    /** Minimax alpha-beta search over float values */
+    public static final int SEARCH_ALPHA_BETA = 0;
+    /** Negamax principal variation search over fixed-point int scores */
+    public static final int SEARCH_PVS = 1;
+
+    /**
+     * The search algorithm, SEARCH_ALPHA_BETA or SEARCH_PVS.
+     */
+    int searchMode = SEARCH_ALPHA_BETA;
+
+    /**
+     * Positions with at most this many open tiles are solved exactly
+     * by an EndgameSolver instead of being searched to maxDepth, or 0
+     * to always search to maxDepth.
+     */
+    int endgameThreshold = 0;
+
+    // Table entries of each search thread's endgame solver
+    private static final int ENDGAME_CAPACITY = 1 << 18;
+    private final ThreadLocal<EndgameSolver> endgameSolvers =
+            ThreadLocal.withInitial(() -> new EndgameSolver(ENDGAME_CAPACITY));
+
+    /**
+     * PVS scores are heuristic values times SCORE_SCALE, rounded,
+     * and relative to the player to move.
+     */
+    public static final int SCORE_SCALE = 256;
+    private static final int INFINITE_SCORE = 1 << 30;
+    private static final int MAX_SCORE = INFINITE_SCORE - 1;
+
+    /**
+     * Half the width of the PVS aspiration window in scores, or 0 to
+     * search every iteration with a full window.
+     */
+    int aspirationWindow = 2 * SCORE_SCALE;
+
+    /**
+     * Receives progress and statistics from every search.
+     * SearchListener.NONE searches without printing anything.
+     */
+    SearchListener listener = new ConsoleSearchListener();
+
+    // Score of the best root move found by the latest PVS root search
+    private int rootScore;
+
+    // Weight of the best root move found by the latest alpha-beta root search
+    private float rootWeight;
+
+    // Value of the latest move found by getNextMove, for Player 1
+    private float searchValue = Float.NaN;
+
+    // Counters of the latest call to getNextMove
+    private SearchStatistics statistics = new SearchStatistics();
+
+    // Scratch state for single-threaded searches
+    private final SearchContext context = new SearchContext();
+
     public ABSearchPlayer(int player) {
         super(String.format("Computer Player %d", player+1), player);
     }
@@ -36,9 +175,431 @@ public class ABSearchPlayer extends Player implements Heuristic {
         this.heuristic = heuristic;
     }
 
+    /**
+     * Sets the heuristic used to value leaves, such as a
+     * CachingHeuristic wrapped around this player's own estimate.
+     * @param heuristic the heuristic
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        if (heuristic == null) {
+            throw new IllegalArgumentException("heuristic cannot be null");
+        }
+        this.heuristic = heuristic;
+    }
+
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Enables or disables the transposition table.
+     * The table is only consulted while gamma = 1, since discounted
+     * values depend on the path taken to reach a position.
+     * @param table the table to use, or null to disable it
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.transpositionTable = table;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * Sets the number of threads used to search.
+     * With PARALLEL_ROOT, the chosen move is the same as with a single thread.
+     * @param threads the number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (threads != this.threads && forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+        }
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Chooses how searches use more than 1 thread.
+     * PARALLEL_ROOT splits the root moves between the threads. It only
+     * applies to SEARCH_ALPHA_BETA, and picks the same move as a
+     * single thread.
+     * PARALLEL_LAZY_SMP runs threads - 1 helpers next to the main
+     * search. Each helper searches the whole tree with the root moves
+     * in a different order, every other one 1 ply deeper than the main
+     * search, and keeps deepening until the main search finishes.
+     * They share the transposition table, so the main search finds
+     * more of its positions already searched. It works with both
+     * search modes, but needs a transposition table and gamma = 1, and
+     * falls back to PARALLEL_ROOT otherwise. The chosen move can differ
+     * from a single thread's, since entries searched to other depths
+     * are shared, and from one run to the next.
+     * @param mode PARALLEL_ROOT or PARALLEL_LAZY_SMP
+     */
+    public void setParallelMode(int mode) {
+        if (mode != PARALLEL_ROOT && mode != PARALLEL_LAZY_SMP) {
+            throw new IllegalArgumentException("unknown parallel mode " + mode);
+        }
+        this.parallelMode = mode;
+    }
+
+    public int getParallelMode() {
+        return parallelMode;
+    }
+
+    /**
+     * Switches between fixed-depth and time-bounded searches.
+     * With a budget, getNextMove deepens from depth 1 upward until the
+     * budget runs out, and returns the best move of the deepest search
+     * that finished. maxDepth is ignored while a budget is set.
+     * @param millis the time budget per move in milliseconds,
+     *               or 0 to search to maxDepth
+     */
+    public void setTimeBudget(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("The time budget cannot be negative");
+        }
+        this.timeBudget = millis;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Sets how moves are ordered inside the search. Ordering only
+     * changes how many nodes are searched, not the chosen move.
+     * ORDER_PV needs a transposition table to remember best moves.
+     * @param ordering a combination of the ORDER_* flags, or 0 to
+     *                 search moves in MoveGenerator's order
+     */
+    public void setMoveOrdering(int ordering) {
+        this.moveOrdering = ordering;
+    }
+
+    public int getMoveOrdering() {
+        return moveOrdering;
+    }
+
+    /**
+     * Enables or disables symmetry reduction. Root moves that lead to
+     * rotations or reflections of an earlier move's position are
+     * skipped, and the transposition table shares entries between
+     * symmetric positions. This only keeps the chosen move the same
+     * when the heuristic gives symmetric positions the same value,
+     * as ScoreHeuristic does; a heuristic that depends on
+     * where tiles are would see skipped moves as different.
+     * @param enabled true to treat rotated and reflected positions as equal
+     */
+    public void setSymmetryReduction(boolean enabled) {
+        this.symmetryReduction = enabled;
+    }
+
+    /**
+     * Enables or disables dominance pruning. At each cell, costs above
+     * what can still flip a neighbour or protect the tile are skipped,
+     * except for spending the whole pool. The game value is the same
+     * either way (benchmarks.DominanceCheck checks this exhaustively
+     * on small boards), and so is the chosen move.
+     * @param enabled false to search every cost, as older versions did
+     */
+    public void setDominancePruning(boolean enabled) {
+        this.dominancePruning = enabled;
+    }
+
+    public boolean getDominancePruning() {
+        return dominancePruning;
+    }
+
+    /**
+     * Chooses the search algorithm.
+     * SEARCH_PVS searches with a null window after the first move of
+     * each node, and re-searches when a move turns out better. With a
+     * time budget, each iteration starts with an aspiration window
+     * around the previous iteration's score. It picks the same move as
+     * SEARCH_ALPHA_BETA whenever heuristic values are multiples of
+     * 1 / SCORE_SCALE, as the built-in ones are.
+     * PVS only uses more than 1 thread with PARALLEL_LAZY_SMP, and
+     * needs gamma = 1; otherwise SEARCH_ALPHA_BETA is used.
+     * @param mode SEARCH_ALPHA_BETA or SEARCH_PVS
+     */
+    public void setSearchMode(int mode) {
+        if (mode != SEARCH_ALPHA_BETA && mode != SEARCH_PVS) {
+            throw new IllegalArgumentException("unknown search mode " + mode);
+        }
+        this.searchMode = mode;
+    }
+
+    public int getSearchMode() {
+        return searchMode;
+    }
+
+    /**
+     * Hands positions near the end of the game over to an exact
+     * solver. Their values are the heuristic's calculate at the end of
+     * a perfect line of play, the same as if the search had reached
+     * the end of the game itself, so the chosen moves are perfect once
+     * the root has this many open tiles or fewer. Solving ignores the
+     * time budget, so keep the threshold small enough to solve quickly.
+     * @param openTiles the most open tiles a position can have to be
+     *                  solved exactly, or 0 to disable the solver
+     */
+    public void setEndgameThreshold(int openTiles) {
+        if (openTiles < 0) {
+            throw new IllegalArgumentException("The endgame threshold cannot be negative");
+        }
+        this.endgameThreshold = openTiles;
+    }
+
+    public int getEndgameThreshold() {
+        return endgameThreshold;
+    }
+
+    /**
+     * Sets the aspiration window used by PVS with a time budget.
+     * Each iteration first searches values within width of the
+     * previous iteration's value, and widens the window when the
+     * result falls outside of it.
+     * @param width half the width of the window in heuristic values,
+     *              or 0 to always search with a full window
+     */
+    public void setAspirationWindow(float width) {
+        if (width < 0) {
+            throw new IllegalArgumentException("The aspiration window cannot be negative");
+        }
+        this.aspirationWindow = toScore(width);
+    }
+
+    /**
+     * Sets where search progress and statistics are reported.
+     * @param listener the listener, or SearchListener.NONE
+     */
+    public void setSearchListener(SearchListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Use SearchListener.NONE instead of null");
+        }
+        this.listener = listener;
+    }
+
+    public SearchListener getSearchListener() {
+        return listener;
+    }
+
+    /**
+     * Switches between a ConsoleSearchListener and no listener at all.
+     * @param verbose false to search without printing anything
+     */
+    public void setVerbose(boolean verbose) {
+        this.listener = verbose ? new ConsoleSearchListener() : SearchListener.NONE;
+    }
+
+    /**
+     * @return the number of nodes visited by the latest call to getNextMove
+     */
+    public long getNodeCount() {
+        return statistics.getNodes();
+    }
+
+    /**
+     * @return the counters collected by the latest call to getNextMove
+     */
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The value the latest call to getNextMove found for its move, in
+     * the heuristic's units, from Player 1's point of view. This is the
+     * search value of the position the move was chosen in.
+     * @return the value, or NaN if no move was found
+     */
+    public float getSearchValue() {
+        return searchValue;
+    }
+
     @Override
     public Move getNextMove(TileGame game) {
-        // Compute the maximum meaningful play
+        long started = System.nanoTime();
+        statistics = new SearchStatistics();
+        TranspositionTable table = transpositionTable;
+        long probes = 0;
+        long hits = 0;
+        long cutoffs = 0;
+        if (table != null) {
+            table.newSearch();
+            probes = table.getProbes();
+            hits = table.getHits();
+            cutoffs = table.getCutoffs();
+        }
+        context.clearOrdering();
+
+        int moveCount = MoveGenerator.countMoves(game, game.turn);
+        int[] moves = new int[MoveGenerator.capacity(game.rows, game.cols, game.getPlayerPool())];
+        int count;
+        if (dominancePruning) {
+            count = MoveGenerator.generateNonDominated(game, MoveGenerator.ALL, moves);
+            Arrays.sort(moves, 0, count);
+        } else {
+            count = MoveGenerator.generate(game, game.turn, getPoolLimit(game), moves);
+        }
+
+        if (symmetryReduction) {
+            if (symmetry == null || symmetry.topology != game.getTopology()) {
+                symmetry = new Symmetry(game.getTopology());
+            }
+            count = removeSymmetricMoves(game, moves, count);
+        }
+
+        listener.searchStarted(this, game, moveCount, count);
+        int best;
+        smpDepth = timeBudget > 0 ? 1 : maxDepth;
+        SearchContext[] helpers = useLazySMP() ? startHelpers(game, moves, count) : new SearchContext[0];
+        try {
+            if (timeBudget > 0) {
+                best = searchIterative(game, moves, count, System.nanoTime() + timeBudget * 1000000L);
+            } else {
+                if (usePVS()) {
+                    best = searchRootPVS(game, moves, count, Long.MAX_VALUE, -INFINITE_SCORE, INFINITE_SCORE, maxDepth);
+                } else {
+                    best = searchRoot(game, moves, count, Long.MAX_VALUE, maxDepth);
+                }
+                statistics.setDepth(maxDepth);
+            }
+        } finally {
+            stopHelpers(helpers);
+        }
+
+        if (best < 0) {
+            searchValue = Float.NaN;
+        } else if (usePVS()) {
+            float value = (float) rootScore / SCORE_SCALE;
+            searchValue = game.turn == TileGame.PLAYER1 ? value : 0 - value;
+        } else {
+            searchValue = player == TileGame.PLAYER1 ? rootWeight : 0 - rootWeight;
+        }
+
+        statistics.finish(System.nanoTime() - started, table, probes, hits, cutoffs);
+        Move move = best < 0 ? null : MoveGenerator.toMove(moves[best]);
+        listener.searchFinished(this, move, statistics);
+        return move;
+    }
+
+    /*
+    Adds a search thread's counters to the statistics, and resets them
+     */
+    private void collect(SearchContext ctx) {
+        statistics.add(ctx);
+        ctx.resetCounters();
+    }
+
+    /*
+    Starts threads - 1 Lazy SMP helpers on the thread pool. Returns
+    their contexts, which stopHelpers uses to end them.
+     */
+    private SearchContext[] startHelpers(TileGame game, int[] moves, int count) {
+        if (forkJoinPool == null) {
+            forkJoinPool = new ForkJoinPool(threads);
+        }
+        SearchContext[] helpers = new SearchContext[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            int helper = i + 1;
+            SearchContext ctx = new SearchContext();
+            helpers[i] = ctx;
+
+            // Rotate the root moves, so helpers start in different parts of the tree
+            int[] order = new int[count];
+            for (int j = 0; j < count; j++) {
+                order[j] = moves[(j + helper) % count];
+            }
+            helperTasks.add(forkJoinPool.submit(() -> searchHelper(ctx, game, order, count, helper)));
+        }
+        return helpers;
+    }
+
+    /*
+    Stops the helpers and waits for them to finish
+     */
+    private void stopHelpers(SearchContext[] helpers) {
+        for (SearchContext ctx : helpers) {
+            ctx.stop();
+        }
+        for (Future<?> task : helperTasks) {
+            try {
+                task.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Helper search failed", e);
+            }
+        }
+        helperTasks.clear();
+    }
+
+    /*
+    A Lazy SMP helper. Searches the root moves again and again, at
+    least as deep as the main search, or 1 ply deeper for odd helpers,
+    until it is stopped or has searched to the end of the game. Only
+    the entries it leaves in the transposition table are used. Leaf
+    estimates are scaled for the main search's depth when each pass
+    starts, so the entries match the ones the main search stores.
+     */
+    private void searchHelper(SearchContext ctx, TileGame game, int[] moves, int count, int helper) {
+        ctx.startSearch(Long.MAX_VALUE);
+        int depthLimit = game.countOpenTiles();
+        for (int depth = 0; depth < depthLimit && !ctx.isAborted(); ) {
+            int mainDepth = smpDepth;
+            ctx.searchDepth = mainDepth;
+            depth = Integer.min(depthLimit, Integer.max(depth + 1, mainDepth + helper % 2));
+            if (usePVS()) {
+                int alpha = -INFINITE_SCORE;
+                for (int i = 0; i < count && !ctx.isAborted(); i++) {
+                    int move = moves[i];
+                    TileGame next = game.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+                    alpha = Integer.max(alpha, searchChild(ctx, game, game.turn, next, depth - 1, alpha, INFINITE_SCORE));
+                }
+            } else {
+                float bestWeight = Float.NEGATIVE_INFINITY;
+                for (int i = 0; i < count && !ctx.isAborted(); i++) {
+                    Move move = MoveGenerator.toMove(moves[i]);
+                    bestWeight = Float.max(bestWeight, evaluateMove(ctx, game, move, bestWeight, depth));
+                }
+            }
+        }
+        collect(ctx);
+    }
+
+    private void rootMoveSearched(int move, int index, long nodes, long nanos) {
+        statistics.addRootMove(nanos);
+        listener.rootMoveSearched(MoveGenerator.toMove(move), index, nodes, nanos);
+    }
+
+    /*
+    Removes root moves that lead to a rotation or reflection of a
+    position reached by an earlier move. Returns the new move count.
+     */
+    private int removeSymmetricMoves(TileGame game, int[] moves, int count) {
+        HashSet<Long> seen = new HashSet<>();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            TileGame next = game.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+            if (seen.add(symmetry.canonicalHash(next))) {
+                moves[kept++] = move;
+            }
+        }
+        return kept;
+    }
+
+    /*
+    Computes the maximum meaningful play for the root player.
+    Playing more than this can't flip anything more, or protect
+    the tile any better.
+     */
+    private int getPoolLimit(TileGame game) {
         int p1Max = game.getPlayerPool(TileGame.PLAYER2) + 1;
         int p2Max = game.getPlayerPool(TileGame.PLAYER1) + 1;
         for (int r = 0; r < game.rows; r++) {
@@ -53,109 +614,572 @@ public class ABSearchPlayer extends Player implements Heuristic {
             }
         }
 
-        int poolLimit = player == TileGame.PLAYER1 ? p1Max : p2Max;
+        return player == TileGame.PLAYER1 ? p1Max : p2Max;
+    }
 
-        int moveCount = 0;
-        for (Move move : getMoveList(game))
-            moveCount++;
+    private boolean usePVS() {
+        return searchMode == SEARCH_PVS && gamma == 1.0f;
+    }
 
-        System.out.printf("Evaluating %d moves...\n", moveCount);
-        int remaining = moveCount;
+    private boolean useLazySMP() {
+        return threads > 1 && parallelMode == PARALLEL_LAZY_SMP && transpositionTable != null && gamma == 1.0f;
+    }
 
-        float bestWeight = Float.NEGATIVE_INFINITY;
-        Move bestMove = null;
+    /*
+    Searches one depth after another until the deadline passes.
+    Each iteration searches the previous iteration's best move first.
+    Depth 1 always finishes, so there is always a move to return.
+     */
+    private int searchIterative(TileGame game, int[] moves, int count, long deadline) {
+        int depthLimit = game.countOpenTiles();
+        int best = -1;
+        int score = 0;
 
-        for (Move move : getMoveList(game)) {
-            if (move.cost > poolLimit) {
-                System.out.printf("\nSkipping %d moves.\n", remaining);
-                break;
+        try {
+            for (int depth = 1; depth <= depthLimit; depth++) {
+                smpDepth = depth;
+
+                long start = System.nanoTime();
+                long limit = depth == 1 ? Long.MAX_VALUE : deadline;
+                int result;
+                if (!usePVS()) {
+                    result = searchRoot(game, moves, count, limit, depth);
+                } else if (depth == 1 || aspirationWindow == 0) {
+                    result = searchRootPVS(game, moves, count, limit, -INFINITE_SCORE, INFINITE_SCORE, depth);
+                } else {
+                    result = searchAspiration(game, moves, count, limit, score, depth);
+                }
+                if (result == ABORTED) {
+                    break;
+                }
+                best = result;
+                score = rootScore;
+                statistics.setDepth(depth);
+                listener.iterationFinished(depth, best < 0 ? null : MoveGenerator.toMove(moves[best]),
+                        System.nanoTime() - start);
+
+                // Deeper searches can't change anything once every leaf is solved
+                boolean solved = endgameThreshold > 0 && depth >= depthLimit - endgameThreshold;
+                if (best < 0 || solved || System.nanoTime() >= deadline) {
+                    break;
+                }
+
+                // Search the best move first next time
+                int move = moves[best];
+                System.arraycopy(moves, 0, moves, 1, best);
+                moves[0] = move;
+                best = 0;
             }
+        } finally {
+            // An aborted aspiration search may have left a bound behind
+            rootScore = score;
+        }
+        return best;
+    }
+
+    /*
+    Searches every root move to the given depth.
+    Returns the index of the best move, -1 if there are no moves,
+    or ABORTED if the deadline passed first.
+     */
+    private int searchRoot(TileGame game, int[] moves, int count, long deadline, int depth) {
+        if (threads > 1 && !useLazySMP()) {
+            return searchParallel(game, moves, count, deadline, depth);
+        }
+
+        context.startSearch(deadline);
+        context.searchDepth = depth;
 
-            float num = (float) (remaining*remaining);
-            float approx = 100.0f - 100.0f * num / (moveCount*moveCount);
-            System.out.printf("\r%d / %d moves remaining (approx %.1f%%)...       ", remaining--, moveCount, approx);
+        float bestWeight = Float.NEGATIVE_INFINITY;
+        int best = -1;
 
-            float weight = evaluateMove(game, move, bestWeight);
+        for (int i = 0; i < count; i++) {
+            Move move = MoveGenerator.toMove(moves[i]);
+            listener.rootMoveStarted(move, i);
+
+            long start = System.nanoTime();
+            float weight = evaluateMove(context, game, move, bestWeight, depth);
+            long nodes = context.nodes;
+            collect(context);
+            if (context.isAborted()) {
+                return ABORTED;
+            }
+            rootMoveSearched(moves[i], i, nodes, System.nanoTime() - start);
 
             if (weight > bestWeight) {
                 bestWeight = weight;
+                best = i;
+
+            }
+        }
+        rootWeight = bestWeight;
+        return best;
+    }
+
+    /*
+    Searches the root moves on the thread pool.
+
+    Each root move is searched with the best exact value known when it
+    starts as its bound, and raises that bound when it beats it. A move
+    that failed low against a bound equal to the final best value might
+    tie it, so those are searched again in move order, which picks the
+    same move as the sequential search.
+     */
+    private int searchParallel(TileGame game, int[] moves, int count, long deadline, int depth) {
+        if (forkJoinPool == null) {
+            forkJoinPool = new ForkJoinPool(threads);
+        }
+
+        float[] weights = new float[count];
+        float[] bounds = new float[count];
+        AtomicInteger best = new AtomicInteger(Float.floatToIntBits(Float.NEGATIVE_INFINITY));
+        AtomicBoolean aborted = new AtomicBoolean(false);
+
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final Move move = MoveGenerator.toMove(moves[i]);
+            tasks.add(() -> {
+                SearchContext ctx = new SearchContext();
+                ctx.startSearch(deadline);
+                ctx.searchDepth = depth;
+                listener.rootMoveStarted(move, index);
+
+                long start = System.nanoTime();
+                float bound = Float.intBitsToFloat(best.get());
+                float weight = evaluateMove(ctx, game, move, bound, depth);
+                long nodes = ctx.nodes;
+                collect(ctx);
+                if (ctx.isAborted()) {
+                    aborted.set(true);
+                    return null;
+                }
+                bounds[index] = bound;
+                weights[index] = weight;
+
+                // Raise the shared bound
+                int current = best.get();
+                while (weight > Float.intBitsToFloat(current) && !best.compareAndSet(current, Float.floatToIntBits(weight))) {
+                    current = best.get();
+                }
+
+                rootMoveSearched(moves[index], index, nodes, System.nanoTime() - start);
+                return null;
+            });
+        }
+
+        for (Future<Void> result : forkJoinPool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Root move search failed", e);
+            }
+        }
+        if (aborted.get()) {
+            return ABORTED;
+        }
+
+        context.startSearch(deadline);
+        float bestWeight = Float.intBitsToFloat(best.get());
+        rootWeight = bestWeight;
+        for (int i = 0; i < count; i++) {
+            if (weights[i] > bounds[i]) {
+                if (weights[i] == bestWeight) {
+                    return i;
+                }
+            } else if (bounds[i] == bestWeight) {
+                float bound = Math.nextDown(bestWeight);
+                float weight = evaluateMove(context, game, MoveGenerator.toMove(moves[i]), bound, depth);
+                collect(context);
+                if (context.isAborted()) {
+                    return ABORTED;
+                }
+                if (weight > bound) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*
+    Searches the root moves with a window centred on the previous
+    iteration's score, widening it on the failing side until the
+    score falls inside
+     */
+    private int searchAspiration(TileGame game, int[] moves, int count, long deadline, int guess, int depth) {
+        int delta = aspirationWindow;
+        int alpha = Integer.max(-INFINITE_SCORE, guess - delta);
+        int beta = Integer.min(INFINITE_SCORE, guess + delta);
+        while (true) {
+            int best = searchRootPVS(game, moves, count, deadline, alpha, beta, depth);
+            if (best == ABORTED || best < 0) {
+                return best;
+            }
+            delta = delta < INFINITE_SCORE / 4 ? 4 * delta : INFINITE_SCORE;
+            if (rootScore <= alpha && alpha > -INFINITE_SCORE) {
+                alpha = Integer.max(-INFINITE_SCORE, guess - delta);
+            } else if (rootScore >= beta && beta < INFINITE_SCORE) {
+                beta = Integer.min(INFINITE_SCORE, guess + delta);
+            } else {
+                return best;
+            }
+        }
+    }
+
+    /*
+    Searches the root moves with PVS inside the window (alpha, beta),
+    and leaves the best score in rootScore. Returns the index of the
+    first move with the best score, -1 if there are no moves, or
+    ABORTED if the deadline passed first.
+     */
+    private int searchRootPVS(TileGame game, int[] moves, int count, long deadline, int alpha, int beta, int depth) {
+        context.startSearch(deadline);
+        context.searchDepth = depth;
+
+        int bestScore = -INFINITE_SCORE;
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            TileGame next = game.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+            listener.rootMoveStarted(MoveGenerator.toMove(move), i);
+            long start = System.nanoTime();
+            long nodes = context.nodes;
+
+            int score;
+            if (best < 0) {
+                score = searchChild(context, game, game.turn, next, depth - 1, alpha, beta);
+            } else {
+                // Only a move that beats the best so far needs an exact score
+                score = searchChild(context, game, game.turn, next, depth - 1, alpha, alpha + 1);
+                if (score > alpha && score < beta) {
+                    score = searchChild(context, game, game.turn, next, depth - 1, alpha, beta);
+                }
+            }
+            if (context.isAborted()) {
+                collect(context);
+                return ABORTED;
+            }
+            rootMoveSearched(move, i, context.nodes - nodes, System.nanoTime() - start);
+
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+            if (bestScore >= beta) {
+                context.countCutoff(0);
+                break;
+            }
+            alpha = Integer.max(alpha, bestScore);
+        }
+
+        collect(context);
+        rootScore = bestScore;
+        return best;
+    }
+
+    /*
+    Scores a child position for the player to move in the parent.
+    A player whose opponent has no pool left moves again, so the
+    score is only negated when the turn passes.
+     */
+    private int searchChild(SearchContext ctx, TileGame startBoard, int turn, TileGame next, int depth, int alpha, int beta) {
+        if (next.turn == turn) {
+            return pvs(ctx, startBoard, next, depth, alpha, beta);
+        } else {
+            return -pvs(ctx, startBoard, next, depth, -beta, -alpha);
+        }
+    }
+
+    /*
+    Maps a move of the position into the frame of its canonical
+    representative, where symmetry i takes it (see Symmetry.canonicalIndex).
+    Returns the move unchanged without a symmetry.
+     */
+    private static int toCanonical(Symmetry sym, int i, int move, int cols) {
+        if (sym == null || move == 0) {
+            return move;
+        }
+        int cell = sym.mapCell(i, MoveGenerator.row(move) * cols + MoveGenerator.col(move));
+        return MoveGenerator.encode(cell / cols, cell % cols, MoveGenerator.cost(move));
+    }
+
+    /*
+    Inverse of toCanonical, as OpeningBook.lookup maps book moves
+     */
+    private static int fromCanonical(Symmetry sym, int i, int move, int cols) {
+        if (sym == null || move == 0) {
+            return move;
+        }
+        int cell = sym.sourceCell(i, MoveGenerator.row(move) * cols + MoveGenerator.col(move));
+        return MoveGenerator.encode(cell / cols, cell % cols, MoveGenerator.cost(move));
+    }
+
+    /*
+    Negamax principal variation search. Returns the fail-soft score
+    of the state for the player to move.
+     */
+    private int pvs(SearchContext ctx, TileGame startBoard, TileGame state, int depth, int alpha, int beta) {
+        ctx.nodes++;
+        if (ctx.isTimeUp()) {
+            // The result is thrown away, so any value will do
+            return 0;
+        } else if (state.isGameForfeitable()) {
+            return toScore(heuristic.calculate(state), state.turn);
+        } else if (state.countOpenTiles() <= endgameThreshold) {
+            return toScore(solveEndgame(state), state.turn);
+        } else if (depth <= 0) {
+            return toScore(heuristic.estimate(startBoard, state, ctx.searchDepth), state.turn);
+        }
+
+        // Consult the transposition table
+        TranspositionTable table = transpositionTable;
+        long key = 0;
+        // Entries of symmetric positions are keyed, and hold their move, in the canonical frame
+        Symmetry frameSymmetry = null;
+        int frame = 0;
+        int alphaOrig = alpha;
+        int pvMove = 0;
+        if (table != null) {
+            Symmetry sym = symmetryReduction ? symmetry : null;
+            if (sym != null && sym.topology == state.getTopology()) {
+                frameSymmetry = sym;
+                frame = sym.canonicalIndex(state);
+                key = sym.hash(frame, state);
+            } else {
+                key = state.getHash();
+            }
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.MISS) {
+                pvMove = fromCanonical(frameSymmetry, frame, TranspositionTable.move(entry), state.cols);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int stored = TranspositionTable.score(entry);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT
+                            || (flag == TranspositionTable.LOWER_BOUND && stored >= beta)
+                            || (flag == TranspositionTable.UPPER_BOUND && stored <= alpha)) {
+                        table.recordCutoff();
+                        return stored;
+                    }
+                }
+            }
+        }
+
+        MovePicker picker = ctx.picker(depth);
+        picker.start(state, moveOrdering, depth, pvMove, dominancePruning, Integer.MAX_VALUE);
+        ctx.expanded++;
+
+        int best = -INFINITE_SCORE;
+        int bestMove = 0;
+        boolean first = true;
+        for (int move = picker.next(); move != 0; move = picker.next()) {
+            ctx.children++;
+            TileGame next = state.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+
+            int score;
+            if (first) {
+                first = false;
+                score = searchChild(ctx, startBoard, state.turn, next, depth - 1, alpha, beta);
+            } else {
+                score = searchChild(ctx, startBoard, state.turn, next, depth - 1, alpha, alpha + 1);
+                if (score > alpha && score < beta) {
+                    score = searchChild(ctx, startBoard, state.turn, next, depth - 1, alpha, beta);
+                }
+            }
+
+            if (score > best) {
+                best = score;
                 bestMove = move;
+            }
+            if (best >= beta) {
+                ctx.recordCutoff(moveOrdering, depth, state, move);
+                ctx.countCutoff(ctx.searchDepth - depth);
+                break;
+            }
+            alpha = Integer.max(alpha, best);
+        }
 
+        if (table != null && !ctx.isAborted()) {
+            int flag;
+            if (best <= alphaOrig) {
+                flag = TranspositionTable.UPPER_BOUND;
+            } else if (best >= beta) {
+                flag = TranspositionTable.LOWER_BOUND;
+            } else {
+                flag = TranspositionTable.EXACT;
             }
+            table.storeScore(key, depth, best, flag, toCanonical(frameSymmetry, frame, bestMove, state.cols));
         }
-        System.out.println();
-        return bestMove;
+        return best;
+    }
+
+    /*
+    Converts a heuristic value to a fixed-point score
+     */
+    private static int toScore(float value) {
+        long score = Math.round((double) value * SCORE_SCALE);
+        return (int) Long.max(-MAX_SCORE, Long.min(MAX_SCORE, score));
+    }
+
+    /*
+    Converts a heuristic value, which favours Player 1, to a score
+    for the given player
+     */
+    private static int toScore(float value, int player) {
+        int score = toScore(value);
+        return player == TileGame.PLAYER1 ? score : -score;
+    }
+
+    /*
+    Values a position by solving it exactly, as the heuristic values
+    the end position of a perfect line of play
+     */
+    private float solveEndgame(TileGame state) {
+        return heuristic.calculate(endgameSolvers.get().playOut(state));
     }
 
     public float evaluateMove(TileGame game, Move move, float bestWeight) {
+        context.startSearch(Long.MAX_VALUE);
+        context.searchDepth = maxDepth;
+        return evaluateMove(context, game, move, bestWeight, maxDepth);
+    }
+
+    private float evaluateMove(SearchContext ctx, TileGame game, Move move, float bestWeight, int depth) {
         if (player == TileGame.PLAYER1) {
-            return alphaBeta(game, move.copyAndApply(game), maxDepth-1, bestWeight, Float.POSITIVE_INFINITY, 1.0f);
+            return alphaBeta(ctx, game, move.copyAndApply(game), depth-1, bestWeight, Float.POSITIVE_INFINITY, 1.0f);
         } else {
-            return -alphaBeta(game, move.copyAndApply(game), maxDepth-1, Float.NEGATIVE_INFINITY, -bestWeight, 1.0f);
+            return -alphaBeta(ctx, game, move.copyAndApply(game), depth-1, Float.NEGATIVE_INFINITY, -bestWeight, 1.0f);
         }
     }
 
     public float alphaBeta(TileGame startBoard, TileGame state, int depth, float alpha, float beta, float lambda) {
-        if (state.isGameForfeitable()) {
+        context.startSearch(Long.MAX_VALUE);
+        context.searchDepth = maxDepth;
+        return alphaBeta(context, startBoard, state, depth, alpha, beta, lambda);
+    }
+
+    private float alphaBeta(SearchContext ctx, TileGame startBoard, TileGame state, int depth, float alpha, float beta, float lambda) {
+        ctx.nodes++;
+        if (ctx.isTimeUp()) {
+            // The result is thrown away, so any value will do
+            return 0.0f;
+        } else if (state.isGameForfeitable()) {
             return heuristic.calculate(state);
+        } else if (state.countOpenTiles() <= endgameThreshold) {
+            return solveEndgame(state);
         } else if (depth <= 0) {
-            return heuristic.estimate(startBoard, state);
+            return heuristic.estimate(startBoard, state, ctx.searchDepth);
         }
 
         lambda *= this.gamma;
 
-        // Compute the maximum meaningful play
-        int p1Max = 100;// state.getPlayerPool(TileGame.PLAYER2) + 1;
-        int p2Max = 100;//state.getPlayerPool(TileGame.PLAYER1) + 1;
-        for (int r = 0; r < state.rows; r++) {
-            for (int c = 0; c < state.cols; c++ ) {
-                int owner = state.getTileOwner(r,c);
-                int flipCost = state.getTileValue(r,c) + 1;
-                if (owner == TileGame.PLAYER1 && flipCost > p2Max) {
-                    p2Max = flipCost;
-                } else if (owner == TileGame.PLAYER2 && flipCost > p1Max) {
-                    p1Max = flipCost;
+        // Consult the transposition table
+        TranspositionTable table = gamma == 1.0f ? transpositionTable : null;
+        long key = 0;
+        // Entries of symmetric positions are keyed, and hold their move, in the canonical frame
+        Symmetry frameSymmetry = null;
+        int frame = 0;
+        float alphaOrig = alpha;
+        float betaOrig = beta;
+        int pvMove = 0;
+        if (table != null) {
+            Symmetry sym = symmetryReduction ? symmetry : null;
+            if (sym != null && sym.topology == state.getTopology()) {
+                frameSymmetry = sym;
+                frame = sym.canonicalIndex(state);
+                key = sym.hash(frame, state);
+            } else {
+                key = state.getHash();
+            }
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.MISS) {
+                pvMove = fromCanonical(frameSymmetry, frame, TranspositionTable.move(entry), state.cols);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    float stored = TranspositionTable.value(entry);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT
+                            || (flag == TranspositionTable.LOWER_BOUND && stored >= beta)
+                            || (flag == TranspositionTable.UPPER_BOUND && stored <= alpha)) {
+                        table.recordCutoff();
+                        return stored;
+                    }
                 }
             }
         }
 
+        // Skip moves that aren't meaningful
+        MovePicker picker = ctx.picker(depth);
+        picker.start(state, moveOrdering, depth, pvMove, dominancePruning, Integer.MAX_VALUE);
+        int bestMove = 0;
+        ctx.expanded++;
+
+        float value;
         if (state.currentTurn() == TileGame.PLAYER1) {
-            float value = Float.NEGATIVE_INFINITY;
+            value = Float.NEGATIVE_INFINITY;
 
-            for (Move move : getMoveList(state)) {
-                // Skip moves that aren't meaningful
-                if (move.cost > p1Max)
-                    break;
+            for (int move = picker.next(); move != 0; move = picker.next()) {
+                TileGame next = state.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+                ctx.children++;
 
-                value = Float.max(value, alphaBeta(startBoard, move.copyAndApply(state), depth - 1, alpha, beta, lambda));
-                if (value > beta)
+                float result = alphaBeta(ctx, startBoard, next, depth - 1, alpha, beta, lambda);
+                if (result > value) {
+                    value = result;
+                    bestMove = move;
+                }
+                if (value > beta) {
+                    ctx.recordCutoff(moveOrdering, depth, state, move);
+                    ctx.countCutoff(ctx.searchDepth - depth);
                     break;
+                }
                 alpha = Float.max(alpha, value);
             }
-            return lambda * value;
+            value = lambda * value;
 
         } else {
-            float value = Float.POSITIVE_INFINITY;
+            value = Float.POSITIVE_INFINITY;
 
-            for (Move move : getMoveList(state)) {
-                // Skip moves that are equally effective
-                if (move.cost > p2Max)
-                    break;
+            for (int move = picker.next(); move != 0; move = picker.next()) {
+                TileGame next = state.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+                ctx.children++;
 
-                value = Float.min(value, alphaBeta(startBoard, move.copyAndApply(state), depth - 1, alpha, beta, lambda));
-                if (value < alpha)
+                float result = alphaBeta(ctx, startBoard, next, depth - 1, alpha, beta, lambda);
+                if (result < value) {
+                    value = result;
+                    bestMove = move;
+                }
+                if (value < alpha) {
+                    ctx.recordCutoff(moveOrdering, depth, state, move);
+                    ctx.countCutoff(ctx.searchDepth - depth);
                     break;
+                }
                 beta = Float.max(beta, value);
             }
-            return lambda * value;
+            value = lambda * value;
         }
 
+        if (table != null && !ctx.isAborted()) {
+            int flag;
+            if (value <= alphaOrig) {
+                flag = TranspositionTable.UPPER_BOUND;
+            } else if (value >= betaOrig) {
+                flag = TranspositionTable.LOWER_BOUND;
+            } else {
+                flag = TranspositionTable.EXACT;
+            }
+            table.store(key, depth, value, flag, toCanonical(frameSymmetry, frame, bestMove, state.cols));
+        }
+        return value;
 
     }
 
     // Heuristic function to use
     @Override
     public float estimate(TileGame startBoard, TileGame game) {
+        return estimate(startBoard, game, maxDepth);
+    }
+
+    @Override
+    public float estimate(TileGame startBoard, TileGame game, int searchDepth) {
         int p1Pool = game.getPlayerPool(TileGame.PLAYER1);
         int p2Pool = game.getPlayerPool(TileGame.PLAYER2);
 
@@ -167,7 +1191,18 @@ public class ABSearchPlayer extends Player implements Heuristic {
         int p1Bonus = Integer.min(p1Pool, p1Turns);
         int p2Bonus = Integer.min(p2Pool, p2Turns);
 
-        return (game.getScore() - startBoard.getScore()) + (p1Bonus - p2Bonus) * ((float)((open - maxDepth) / maxDepth));
+        return (game.getScore() - startBoard.getScore()) + (p1Bonus - p2Bonus) * ((float)((open - searchDepth) / searchDepth));
+    }
+
+    // The estimate only depends on the start board's score and the depth
+    @Override
+    public long contextKey(TileGame startBoard) {
+        return contextKey(startBoard, maxDepth);
+    }
+
+    @Override
+    public long contextKey(TileGame startBoard, int searchDepth) {
+        return ((long) startBoard.getScore() << 32) ^ searchDepth;
     }
 
     @Override
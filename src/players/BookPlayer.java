@@ -0,0 +1,56 @@
+package players;
+
+import tilegame.TileGame;
+
+public class BookPlayer extends Player {
+
+    /**
+     * Plays moves from an opening book while the game is still in it,
+     * and asks another player once it isn't.
+     */
+
+    private final OpeningBook book;
+    private final Player fallback;
+
+    private int bookMoves = 0;
+    private boolean verbose = true;
+
+    /**
+     * @param book the opening book to play from
+     * @param fallback the player that moves once the book runs out
+     */
+    public BookPlayer(OpeningBook book, Player fallback) {
+        super(fallback.name, fallback.player);
+        this.book = book;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Turns the line printed for each book move on or off. The fallback
+     * player's output is set on the fallback itself.
+     * @param verbose false to play book moves without printing anything
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * @return the number of moves that came from the book
+     */
+    public int getBookMoves() {
+        return bookMoves;
+    }
+
+    @Override
+    public Move getNextMove(TileGame game) {
+        Move move = book.lookup(game);
+        if (move != null) {
+            bookMoves++;
+            if (verbose) {
+                System.out.printf("Book move %s%n", move);
+            }
+            return move;
+        }
+        return fallback.getNextMove(game);
+    }
+}
@@ -0,0 +1,202 @@
+package players;
+
+import tilegame.TileGame;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CachingHeuristic implements Heuristic {
+
+    /**
+     * Remembers the values of another heuristic, so leaves that are
+     * reached again, by other root moves or by later searches, aren't
+     * evaluated again. Worth it for heuristics that cost more than a
+     * table lookup.
+     *
+     * Estimates are keyed by the leaf's hash and the heuristic's
+     * contextKey for the start board, and calculated values by the
+     * leaf's hash alone.
+     *
+     * The cache has a fixed size, in buckets of two entries. A new
+     * entry goes into the first slot of its bucket and moves the entry
+     * there to the second, evicting the older of the two.
+     *
+     * The cache is lock-free, so any number of search threads can
+     * share one. Each entry is a pair of longs, the value and the key
+     * XOR the value. A reader only accepts an entry whose pair gives
+     * back its key, so an entry torn by racing writers reads as a miss.
+     */
+
+    // Set in every stored value word, so an empty slot never matches
+    private static final long VALID = 1L << 32;
+
+    // Mixed into calculate's keys to keep them apart from estimate's
+    private static final long CALCULATE_KEY = 0x2545F4914F6CDD1DL;
+
+    private final Heuristic heuristic;
+
+    // Per entry, key ^ value followed by value. Two entries per bucket.
+    private final long[] entries;
+    private final int bucketMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param heuristic the heuristic whose values are cached
+     * @param capacity the number of entries, rounded up to a power of
+     *                 2, at least 2. Each entry takes 16 bytes.
+     */
+    public CachingHeuristic(Heuristic heuristic, int capacity) {
+        if (heuristic == null) {
+            throw new IllegalArgumentException("heuristic cannot be null");
+        }
+        if (capacity < 2 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^28");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.heuristic = heuristic;
+        this.entries = new long[2 * size];
+        this.bucketMask = size / 2 - 1;
+    }
+
+    /**
+     * @return the heuristic whose values are cached
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    @Override
+    public float estimate(TileGame startBoard, TileGame endBoard) {
+        long key = mix(endBoard.getHash() + mix(heuristic.contextKey(startBoard)));
+        long value = lookup(key);
+        if (value != 0) {
+            return Float.intBitsToFloat((int) value);
+        }
+        float result = heuristic.estimate(startBoard, endBoard);
+        store(key, result);
+        return result;
+    }
+
+    @Override
+    public float estimate(TileGame startBoard, TileGame endBoard, int searchDepth) {
+        long key = mix(endBoard.getHash() + mix(heuristic.contextKey(startBoard, searchDepth)));
+        long value = lookup(key);
+        if (value != 0) {
+            return Float.intBitsToFloat((int) value);
+        }
+        float result = heuristic.estimate(startBoard, endBoard, searchDepth);
+        store(key, result);
+        return result;
+    }
+
+    @Override
+    public float calculate(TileGame endBoard) {
+        long key = mix(endBoard.getHash() ^ CALCULATE_KEY);
+        long value = lookup(key);
+        if (value != 0) {
+            return Float.intBitsToFloat((int) value);
+        }
+        float result = heuristic.calculate(endBoard);
+        store(key, result);
+        return result;
+    }
+
+    @Override
+    public long contextKey(TileGame startBoard) {
+        return heuristic.contextKey(startBoard);
+    }
+
+    @Override
+    public long contextKey(TileGame startBoard, int searchDepth) {
+        return heuristic.contextKey(startBoard, searchDepth);
+    }
+
+    /**
+     * Removes every entry. Must not be called while a search is using the cache.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+    }
+
+    /**
+     * @return the number of values found in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of values that had to be evaluated
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that were found, or 0 if there were none
+     */
+    public float getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0f : (float) h / total;
+    }
+
+    /**
+     * Resets the hit and miss counts.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /*
+    Returns the value word stored for the key, or 0 if there is none
+     */
+    private long lookup(long key) {
+        int base = ((int) key & bucketMask) << 2;
+        for (int i = base; i < base + 4; i += 2) {
+            long value = entries[i + 1];
+            if ((value & VALID) != 0 && (entries[i] ^ value) == key) {
+                hits.increment();
+                return value;
+            }
+        }
+        misses.increment();
+        return 0;
+    }
+
+    private void store(long key, float result) {
+        int base = ((int) key & bucketMask) << 2;
+        long value = VALID | (Float.floatToRawIntBits(result) & 0xFFFFFFFFL);
+        long check = entries[base];
+        long old = entries[base + 1];
+        if ((check ^ old) != key) {
+            // Demote the newer entry, evicting the older one
+            entries[base + 2] = check;
+            entries[base + 3] = old;
+        }
+        entries[base] = key ^ value;
+        entries[base + 1] = value;
+    }
+
+    /*
+    SplitMix64 finalizer, so nearby hashes and contexts spread over the buckets
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        long h = hits.sum();
+        return String.format("%d lookups, %d hits (%.1f%%)", h + misses.sum(), h, 100.0f * getHitRate());
+    }
+}
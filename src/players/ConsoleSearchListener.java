@@ -0,0 +1,68 @@
+package players;
+
+import tilegame.TileGame;
+
+public class ConsoleSearchListener implements SearchListener {
+
+    /**
+     * Prints the progress of a search on the console: a progress line
+     * per root move for fixed-depth searches, and a line per iteration
+     * for time-bounded ones. The node count and transposition table
+     * statistics are only printed when enabled with setPrintStatistics.
+     */
+
+    private int moveCount;
+    private int searchedMoves;
+    private int remaining;
+    private boolean progress;
+    private boolean printStatistics = false;
+
+    /**
+     * @param enabled true to print the node count and transposition
+     *                table statistics after each search
+     */
+    public void setPrintStatistics(boolean enabled) {
+        this.printStatistics = enabled;
+    }
+
+    @Override
+    public synchronized void searchStarted(ABSearchPlayer search, TileGame game, int moveCount, int searchedMoves) {
+        this.moveCount = moveCount;
+        this.searchedMoves = searchedMoves;
+        this.remaining = moveCount;
+        this.progress = search.getTimeBudget() == 0;
+        if (progress) {
+            System.out.printf("Evaluating %d moves...\n", moveCount);
+        }
+    }
+
+    @Override
+    public synchronized void rootMoveStarted(Move move, int index) {
+        if (progress) {
+            float num = (float) (remaining * remaining);
+            float approx = 100.0f - 100.0f * num / ((float) moveCount * moveCount);
+            System.out.printf("\r%d / %d moves remaining (approx %.1f%%)...       ", remaining--, moveCount, approx);
+        }
+    }
+
+    @Override
+    public void iterationFinished(int depth, Move best, long nanos) {
+        System.out.printf("Depth %d: %s (%d ms)%n", depth, best, nanos / 1000000);
+    }
+
+    @Override
+    public synchronized void searchFinished(ABSearchPlayer search, Move best, SearchStatistics statistics) {
+        if (progress) {
+            if (searchedMoves < moveCount) {
+                System.out.printf("\nSkipping %d moves.\n", moveCount - searchedMoves);
+            }
+            System.out.println();
+        }
+        if (printStatistics) {
+            System.out.printf("Searched %d nodes%n", statistics.getNodes());
+            if (search.getTranspositionTable() != null) {
+                System.out.printf("Transposition table: %s%n", search.getTranspositionTable());
+            }
+        }
+    }
+}
@@ -12,10 +12,46 @@ public interface Heuristic {
      */
     float estimate(TileGame startBoard, TileGame endBoard);
 
+    /**
+     * Estimates a board for a search that started with the given
+     * depth. Searches call this, so a heuristic that depends on the
+     * depth gets it from the searching thread rather than from state
+     * other threads may change. By default the depth is ignored.
+     * @param startBoard the board that we started from
+     * @param endBoard the final board that we're evaluating
+     * @param searchDepth the depth the search started with
+     * @return the approximate value of the board.
+     */
+    default float estimate(TileGame startBoard, TileGame endBoard, int searchDepth) {
+        return estimate(startBoard, endBoard);
+    }
+
     /**
      * Calculates the true value of a board state
      * @param endBoard the final board that we're evaluating
      * @return the true value of the board.
      */
     float calculate(TileGame endBoard);
+
+    /**
+     * Identifies the parts of the start board that estimate depends
+     * on, so that CachingHeuristic can share an estimate between
+     * searches that started from different boards. Boards with equal
+     * keys must give equal estimates for every end board.
+     * @param startBoard the board that a search starts from
+     * @return the key, by default the start board's hash
+     */
+    default long contextKey(TileGame startBoard) {
+        return startBoard.getHash();
+    }
+
+    /**
+     * The contextKey of estimate(startBoard, endBoard, searchDepth).
+     * @param startBoard the board that a search starts from
+     * @param searchDepth the depth the search started with
+     * @return the key, by default contextKey(startBoard)
+     */
+    default long contextKey(TileGame startBoard, int searchDepth) {
+        return contextKey(startBoard);
+    }
 }
@@ -0,0 +1,446 @@
+package players;
+
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class MCTSPlayer extends Player {
+
+    /**
+     * Monte Carlo tree search with UCT selection.
+     *
+     * Each iteration walks down the tree picking the child with the
+     * best upper confidence bound, adds one untried move, and finishes
+     * the game with random moves. The result is added to every node on
+     * the path. The move searched most often is played.
+     *
+     * Unlike ABSearchPlayer, the cost of a move is independent of the
+     * branching factor, so large boards get a move within a fixed time.
+     * Every move is made and unmade in place on a CompactBoard, so an
+     * iteration only allocates for the node it adds. Moves dominated by
+     * a cheaper move at the same cell are left out of the tree.
+     *
+     * With more than one thread, each thread grows its own tree from
+     * the same root (root parallelism), and the root move counts of the
+     * trees are summed. Trees are kept between moves, and the subtree
+     * of the position that was actually reached becomes the new root.
+     */
+
+    /**
+     * The number of iterations per move, split between the threads.
+     * Ignored while a time budget is set.
+     */
+    int iterations = 10000;
+
+    /**
+     * The time budget per move in milliseconds, or 0 to run a fixed
+     * number of iterations.
+     */
+    long timeBudget = 0;
+
+    /**
+     * The UCT exploration constant. Larger values try more moves,
+     * smaller values search the best moves deeper.
+     */
+    double exploration = 1.4;
+
+    /**
+     * When set, the part of each tree below the new position is kept
+     * from one move to the next.
+     */
+    boolean treeReuse = true;
+
+    int threads = 1;
+    private ForkJoinPool forkJoinPool = null;
+
+    // Replies searched for a reused subtree, counting both players
+    private static final int REUSE_PLIES = 4;
+
+    // The clock is only read once every this many iterations
+    private static final int CLOCK_INTERVAL = 16;
+
+    private long seed = new Random().nextLong();
+    private Tree[] trees = new Tree[0];
+
+    // Iterations run by the latest call to getNextMove
+    private long iterationCount;
+
+    public MCTSPlayer(int player) {
+        super(String.format("MCTS Player %d", player + 1), player);
+    }
+
+    public MCTSPlayer(int player, int iterations) {
+        this(player);
+        setIterations(iterations);
+    }
+
+    /**
+     * @param iterations the number of iterations per move, at least 1
+     */
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least 1");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Switches between a fixed number of iterations and a time budget.
+     * @param millis the time budget per move in milliseconds,
+     *               or 0 to run a fixed number of iterations
+     */
+    public void setTimeBudget(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("The time budget cannot be negative");
+        }
+        this.timeBudget = millis;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * @param exploration the UCT exploration constant, for example sqrt(2)
+     */
+    public void setExploration(double exploration) {
+        if (exploration < 0) {
+            throw new IllegalArgumentException("The exploration constant cannot be negative");
+        }
+        this.exploration = exploration;
+    }
+
+    /**
+     * @param enabled true to keep the searched tree between moves
+     */
+    public void setTreeReuse(boolean enabled) {
+        this.treeReuse = enabled;
+    }
+
+    /**
+     * Sets the number of threads, each of which grows its own tree.
+     * @param threads the number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (threads != this.threads && forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+        }
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Seeds the random playouts, so that single-threaded searches with
+     * an iteration budget always pick the same moves. Discards the trees.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.trees = new Tree[0];
+    }
+
+    /**
+     * @return the number of iterations run by the latest call to getNextMove
+     */
+    public long getIterationCount() {
+        return iterationCount;
+    }
+
+    @Override
+    public Move getNextMove(TileGame game) {
+        if (game.isGameForfeitable()) {
+            return null;
+        }
+        long deadline = timeBudget > 0 ? System.nanoTime() + timeBudget * 1000000L : Long.MAX_VALUE;
+
+        if (trees.length != threads) {
+            trees = new Tree[threads];
+            for (int t = 0; t < threads; t++) {
+                trees[t] = new Tree(seed + t);
+            }
+        }
+        for (Tree tree : trees) {
+            tree.prepare(game);
+        }
+
+        if (threads == 1) {
+            trees[0].run(iterations, deadline);
+        } else {
+            if (forkJoinPool == null) {
+                forkJoinPool = new ForkJoinPool(threads);
+            }
+            List<Callable<Void>> tasks = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                Tree tree = trees[t];
+                int share = iterations / threads + (t < iterations % threads ? 1 : 0);
+                tasks.add(() -> {
+                    tree.run(Integer.max(share, 1), deadline);
+                    return null;
+                });
+            }
+            for (Future<Void> result : forkJoinPool.invokeAll(tasks)) {
+                try {
+                    result.get();
+                } catch (Exception e) {
+                    throw new RuntimeException("Tree search failed", e);
+                }
+            }
+        }
+
+        // Sum the root counts of every tree by move, since each tree
+        // expands its moves in its own order
+        iterationCount = 0;
+        HashMap<Integer, Integer> index = new HashMap<>();
+        int[] moves = null;
+        long[] visits = null;
+        double[] wins = null;
+        for (Tree tree : trees) {
+            iterationCount += tree.iterations;
+            Node root = tree.root;
+            if (root.moves == null) {
+                continue;
+            }
+            if (moves == null) {
+                moves = root.moves.clone();
+                visits = new long[moves.length];
+                wins = new double[moves.length];
+                for (int i = 0; i < moves.length; i++) {
+                    index.put(moves[i], i);
+                }
+            }
+            for (int i = 0; i < root.expanded; i++) {
+                Node child = root.children[i];
+                int m = index.get(child.move);
+                visits[m] += child.visits;
+                wins[m] += child.wins;
+            }
+        }
+        if (moves == null) {
+            return null;
+        }
+
+        int best = -1;
+        for (int i = 0; i < moves.length; i++) {
+            if (visits[i] > 0 && (best < 0 || visits[i] > visits[best]
+                    || (visits[i] == visits[best] && wins[i] > wins[best]))) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : MoveGenerator.toMove(moves[best]);
+    }
+
+    private static final class Node {
+        Node parent;
+        final int move;
+        // The player that made the move into this node
+        final int mover;
+        // The position hash after the move
+        final long hash;
+
+        // The moves of the node, generated on its second visit. The
+        // first expanded moves are swapped to the front, in the same
+        // order as children.
+        int[] moves;
+        Node[] children;
+        int expanded;
+
+        int visits;
+        // Wins for the mover, with draws counted as half
+        double wins;
+
+        Node(Node parent, int move, int mover, long hash) {
+            this.parent = parent;
+            this.move = move;
+            this.mover = mover;
+            this.hash = hash;
+        }
+    }
+
+    /*
+    The tree and scratch state of one search thread
+     */
+    private final class Tree {
+        final SplittableRandom random;
+        Node root;
+        CompactBoard board;
+        int[] openCells;
+        long iterations;
+
+        Tree(long seed) {
+            this.random = new SplittableRandom(seed);
+        }
+
+        /*
+        Moves the root to the given position, keeping the matching
+        subtree if there is one
+         */
+        void prepare(TileGame game) {
+            long hash = game.getHash();
+            Node found = null;
+            if (treeReuse && root != null && board != null && board.rows == game.rows && board.cols == game.cols) {
+                found = find(root, hash, REUSE_PLIES);
+            }
+            if (found == null) {
+                found = new Node(null, 0, TileGame.otherPlayer(game.turn), hash);
+            }
+            // Updates stop at the new root, and the rest of the old tree is dropped
+            found.parent = null;
+            root = found;
+            board = new CompactBoard(game);
+            if (openCells == null || openCells.length < board.cells) {
+                openCells = new int[board.cells];
+            }
+            iterations = 0;
+        }
+
+        private Node find(Node node, long hash, int plies) {
+            if (node.hash == hash) {
+                return node;
+            }
+            if (plies == 0) {
+                return null;
+            }
+            for (int i = 0; i < node.expanded; i++) {
+                Node found = find(node.children[i], hash, plies - 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+            return null;
+        }
+
+        void run(int budget, long deadline) {
+            for (int i = 0; timeBudget > 0 || i < budget; i++) {
+                if (timeBudget > 0 && i % CLOCK_INTERVAL == 0 && i > 0 && System.nanoTime() >= deadline) {
+                    break;
+                }
+                iterate();
+                iterations++;
+            }
+        }
+
+        /*
+        Runs one selection, expansion, playout and update
+         */
+        private void iterate() {
+            int start = board.getPlies();
+            Node node = root;
+
+            // Select and expand
+            while (!board.isGameForfeitable()) {
+                if (node.moves == null) {
+                    if (node.visits == 0 && node != root) {
+                        break;
+                    }
+                    generate(node);
+                }
+                if (node.expanded < node.moves.length) {
+                    node = expand(node);
+                    break;
+                }
+                node = select(node);
+                play(node.move);
+            }
+
+            int winner = playout();
+            while (board.getPlies() > start) {
+                board.undo();
+            }
+
+            // Update
+            for (Node n = node; n != null; n = n.parent) {
+                n.visits++;
+                if (winner == n.mover) {
+                    n.wins += 1;
+                } else if (winner == TileGame.NO_PLAYER) {
+                    n.wins += 0.5;
+                }
+            }
+        }
+
+        private void generate(Node node) {
+            MoveGenerator.checkEncodable(board.rows, board.cols, board.getPool(board.getTurn()));
+            int[] buffer = new int[board.countOpenTiles() * Integer.max(board.getPool(board.getTurn()), 1)];
+            int count = MoveGenerator.generateNonDominated(board, MoveGenerator.ALL, buffer);
+            node.moves = count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+            node.children = new Node[count];
+        }
+
+        /*
+        Adds a random untried move as a child, and plays it
+         */
+        private Node expand(Node node) {
+            int i = node.expanded + random.nextInt(node.moves.length - node.expanded);
+            int move = node.moves[i];
+            node.moves[i] = node.moves[node.expanded];
+            node.moves[node.expanded] = move;
+
+            int mover = board.getTurn();
+            play(move);
+            Node child = new Node(node, move, mover, board.getHash());
+            node.children[node.expanded++] = child;
+            return child;
+        }
+
+        private Node select(Node node) {
+            double logVisits = Math.log(node.visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < node.expanded; i++) {
+                Node child = node.children[i];
+                double value = child.wins / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private void play(int move) {
+            board.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+        }
+
+        /*
+        Finishes the game with random moves, and returns the winner.
+        Costs are drawn up to twice an even split of the pool over the
+        mover's remaining turns, so neither side runs dry early.
+         */
+        private int playout() {
+            while (!board.isGameForfeitable()) {
+                int open = 0;
+                for (int cell = 0; cell < board.cells; cell++) {
+                    if (board.getRaw(cell) == 0) {
+                        openCells[open++] = cell;
+                    }
+                }
+                int pool = board.getPool(board.getTurn());
+                int typical = Integer.max(1, 2 * pool / ((open + 1) / 2));
+                int cost = 1 + random.nextInt(Integer.min(pool, typical));
+                board.play(openCells[random.nextInt(open)], cost);
+            }
+            int score = board.getScore();
+            return score > 0 ? TileGame.PLAYER1 : score < 0 ? TileGame.PLAYER2 : TileGame.NO_PLAYER;
+        }
+    }
+}
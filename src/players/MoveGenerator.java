@@ -0,0 +1,286 @@
+package players;
+
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+public final class MoveGenerator {
+
+    /**
+     * Generates moves as encoded ints into a caller-provided buffer,
+     * so searches can list moves without allocating.
+     * A move is encoded as (cost << 16) | (row << 8) | col.
+     *
+     * Moves are generated in the same order as MoveList:
+     * lowest cost first, then row-major.
+     *
+     * Rows and columns get 8 bits each, and costs are kept below 2^15
+     * so encoded moves stay positive and sort in that order. capacity
+     * rejects boards outside those limits, so every search that sizes
+     * its buffers with it fails up front instead of decoding the wrong
+     * move.
+     */
+
+    /** The most rows or columns a board can have for its moves to be encoded */
+    public static final int MAX_SIZE = 1 << 8;
+    /** The largest cost that can be encoded */
+    public static final int MAX_COST = (1 << 15) - 1;
+
+    /** Moves that flip at least one neighbour, see generateNonDominated */
+    public static final int FLIPS = 1;
+    /** Moves that flip nothing */
+    public static final int QUIET = 2;
+    public static final int ALL = FLIPS | QUIET;
+
+    private MoveGenerator() {
+    }
+
+    public static int encode(int row, int col, int cost) {
+        return (cost << 16) | (row << 8) | col;
+    }
+
+    public static int row(int move) {
+        return (move >>> 8) & 0xFF;
+    }
+
+    public static int col(int move) {
+        return move & 0xFF;
+    }
+
+    public static int cost(int move) {
+        return move >>> 16;
+    }
+
+    /**
+     * @param move a Move object
+     * @return the same move, encoded
+     */
+    public static int encode(Move move) {
+        return encode(move.row, move.col, move.cost);
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the same move as a Move object
+     */
+    public static Move toMove(int move) {
+        return new Move(row(move), col(move), cost(move));
+    }
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool the largest pool a player can hold
+     * @return a buffer size large enough for any position on that board
+     * @throws IllegalArgumentException if moves on the board can't be encoded
+     */
+    public static int capacity(int rows, int cols, int pool) {
+        checkEncodable(rows, cols, pool);
+        return rows * cols * Integer.max(pool, 1);
+    }
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool the largest pool a player can hold
+     * @throws IllegalArgumentException if a move on that board can't be
+     * encoded: more than MAX_SIZE rows or columns, or a pool above MAX_COST
+     */
+    public static void checkEncodable(int rows, int cols, int pool) {
+        if (rows > MAX_SIZE || cols > MAX_SIZE || pool > MAX_COST) {
+            throw new IllegalArgumentException(String.format(
+                    "Moves can't be encoded on a %dx%dx%d board, the limit is %dx%dx%d",
+                    rows, cols, pool, MAX_SIZE, MAX_SIZE, MAX_COST));
+        }
+    }
+
+    /**
+     * @param game the board to generate moves for
+     * @param player the player that will be playing
+     * @return the number of legal moves, without truncation
+     */
+    public static int countMoves(TileGame game, int player) {
+        return game.countOpenTiles() * game.getPlayerPool(player);
+    }
+
+    /**
+     * Writes every legal move for the given player into the buffer.
+     * @param game the board to generate moves for
+     * @param player the player that will be playing
+     * @param maxCost moves costing more than this are not generated
+     * @param buffer receives the encoded moves; it must hold at least
+     *               countOpenTiles() * min(pool, maxCost) moves
+     * @return the number of moves written
+     */
+    public static int generate(TileGame game, int player, int maxCost, int[] buffer) {
+        // Collect the open cells once; they become the cost 1 moves
+        int open = 0;
+        for (int r = 0; r < game.rows; r++) {
+            for (int c = 0; c < game.cols; c++) {
+                if (game.getRaw(r, c) == 0) {
+                    buffer[open++] = encode(r, c, 1);
+                }
+            }
+        }
+        return expand(buffer, open, Integer.min(game.getPlayerPool(player), maxCost));
+    }
+
+    /**
+     * Writes the current player's moves that aren't dominated by a
+     * cheaper move at the same cell.
+     *
+     * A cost only matters through the neighbours it flips, which
+     * changes at each neighbour's value + 1, and through how hard the
+     * new tile is to flip back. A tile worth the opponent's whole pool
+     * can never be flipped. So at each cell, every cost above
+     *     max(opponent's pool, largest flippable neighbour's value + 1)
+     * does the same as that cap while spending more. The one exception
+     * is spending the whole pool: a player with nothing left may end
+     * the game early (see TileGame.isGameForfeitable), so that move is
+     * always kept.
+     *
+     * Moves are written cell by cell in row-major order, lowest cost
+     * first. Sorting them gives the order of generate.
+     * @param game the board to generate moves for
+     * @param kinds FLIPS, QUIET or ALL
+     * @param buffer receives the encoded moves; it must hold at least
+     *               countMoves(game, game.turn) moves
+     * @return the number of moves written
+     */
+    public static int generateNonDominated(TileGame game, int kinds, int[] buffer) {
+        int player = game.turn;
+        int pool = game.getPlayerPool(player);
+        int oppPool = game.getPlayerPool(TileGame.otherPlayer(player));
+        Topology topology = game.getTopology();
+        int count = 0;
+        for (int cell = 0; cell < topology.cells; cell++) {
+            if (game.getRaw(cell) != 0) {
+                continue;
+            }
+            int threshold = Integer.MAX_VALUE;
+            int cap = oppPool;
+            for (int i = 0, n = topology.getNeighbourCount(cell); i < n; i++) {
+                int flipCost = flipCost(game.getRaw(topology.getNeighbour(cell, i)), player);
+                if (flipCost > 0) {
+                    threshold = Integer.min(threshold, flipCost);
+                    cap = Integer.max(cap, flipCost);
+                }
+            }
+            count = emit(buffer, count, cell / game.cols, cell % game.cols, pool, cap, threshold, kinds);
+        }
+        return count;
+    }
+
+    /**
+     * Same as generateNonDominated(TileGame, int, int[]), for the
+     * current player of a CompactBoard.
+     */
+    public static int generateNonDominated(CompactBoard board, int kinds, int[] buffer) {
+        int player = board.getTurn();
+        int pool = board.getPool(player);
+        int oppPool = board.getPool(TileGame.otherPlayer(player));
+        int count = 0;
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (board.getRaw(cell) != 0) {
+                continue;
+            }
+            int threshold = Integer.MAX_VALUE;
+            int cap = oppPool;
+            for (int i = 0, n = board.getNeighbourCount(cell); i < n; i++) {
+                int flipCost = flipCost(board.getRaw(board.getNeighbour(cell, i)), player);
+                if (flipCost > 0) {
+                    threshold = Integer.min(threshold, flipCost);
+                    cap = Integer.max(cap, flipCost);
+                }
+            }
+            count = emit(buffer, count, cell / board.cols, cell % board.cols, pool, cap, threshold, kinds);
+        }
+        return count;
+    }
+
+    /**
+     * @param game the current position
+     * @param move an encoded move for the current player
+     * @return true if the move is legal and generateNonDominated
+     * would generate it
+     */
+    public static boolean isNonDominated(TileGame game, int move) {
+        int r = row(move);
+        int c = col(move);
+        int cost = cost(move);
+        if (!game.isPlayValid(r, c, cost)) {
+            return false;
+        }
+        int player = game.turn;
+        if (cost == game.getPlayerPool(player)) {
+            return true;
+        }
+        int cap = game.getPlayerPool(TileGame.otherPlayer(player));
+        Topology topology = game.getTopology();
+        int cell = r * game.cols + c;
+        for (int i = 0, n = topology.getNeighbourCount(cell); i < n; i++) {
+            cap = Integer.max(cap, flipCost(game.getRaw(topology.getNeighbour(cell, i)), player));
+        }
+        return cost <= Integer.max(cap, 1);
+    }
+
+    /*
+    The least cost that flips a neighbour with this raw value,
+    or 0 if the player can't flip it
+     */
+    private static int flipCost(int raw, int player) {
+        int cost = player == TileGame.PLAYER1 ? -raw : raw;
+        // Locked tiles (value 0) and the player's own tiles can't be flipped
+        return cost > 1 ? cost : 0;
+    }
+
+    /*
+    Writes the non-dominated costs of one cell
+     */
+    private static int emit(int[] buffer, int count, int row, int col, int pool, int cap, int threshold, int kinds) {
+        int limit = Integer.min(pool, Integer.max(cap, 1));
+        for (int cost = 1; cost <= limit; cost++) {
+            if (((cost >= threshold ? FLIPS : QUIET) & kinds) != 0) {
+                buffer[count++] = encode(row, col, cost);
+            }
+        }
+        if (pool > limit && ((pool >= threshold ? FLIPS : QUIET) & kinds) != 0) {
+            buffer[count++] = encode(row, col, pool);
+        }
+        return count;
+    }
+
+    /**
+     * Writes every legal move for the current player into the buffer.
+     * @param board the board to generate moves for
+     * @param maxCost moves costing more than this are not generated
+     * @param buffer receives the encoded moves; it must hold at least
+     *               countOpenTiles() * min(pool, maxCost) moves
+     * @return the number of moves written
+     */
+    public static int generate(CompactBoard board, int maxCost, int[] buffer) {
+        int open = 0;
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (board.getRaw(cell) == 0) {
+                buffer[open++] = encode(cell / board.cols, cell % board.cols, 1);
+            }
+        }
+        return expand(buffer, open, Integer.min(board.getPool(board.getTurn()), maxCost));
+    }
+
+    /*
+    Repeats the cost 1 moves at the start of the buffer for every cost up to the limit
+     */
+    private static int expand(int[] buffer, int open, int limit) {
+        if (limit <= 0) {
+            return 0;
+        }
+        for (int cost = 2; cost <= limit; cost++) {
+            int base = (cost - 1) * open;
+            for (int i = 0; i < open; i++) {
+                buffer[base + i] = (buffer[i] & 0xFFFF) | (cost << 16);
+            }
+        }
+        return open * limit;
+    }
+}
@@ -3,6 +3,7 @@ package players;
 import tilegame.TileGame;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 
 public class MoveList implements Iterable<Move> {
@@ -26,45 +27,29 @@ public class MoveList implements Iterable<Move> {
 
 
 class MoveIterator implements Iterator<Move> {
-    private final TileGame game;
-    private final int player;
-
-    private int row;
-    private int col;
-    private int value;
+    /*
+    Adapts MoveGenerator to the Iterator API
+     */
+    private final int[] moves;
+    private final int count;
+    private int index;
 
     public MoveIterator(TileGame game, int player) {
-        this.game = game;
-        this.player = player;
-        row = 0;
-        col = -1;
-        value = 1;
-        fetchNext();
-    }
-
-    private void fetchNext() {
-        do {
-            if (++col >= game.cols) {
-                col = 0;
-                if (++row >= game.rows) {
-                    row = 0;
-                    if (++value > game.getPlayerPool(player)) {
-                        return;
-                    }
-                }
-            }
-        } while (game.isTileClaimed(row, col));
+        moves = new int[MoveGenerator.capacity(game.rows, game.cols, game.getPlayerPool(player))];
+        count = MoveGenerator.generate(game, player, Integer.MAX_VALUE, moves);
+        index = 0;
     }
 
     @Override
     public boolean hasNext() {
-        return game.isPlayValid(row, col, player, value);
+        return index < count;
     }
 
     @Override
     public Move next() {
-        Move result = new Move(row, col, value);
-        fetchNext();
-        return result;
+        if (index >= count) {
+            throw new NoSuchElementException();
+        }
+        return MoveGenerator.toMove(moves[index++]);
     }
 }
@@ -0,0 +1,232 @@
+package players;
+
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.util.Arrays;
+
+final class MovePicker {
+
+    /*
+    Yields the moves of one search node a stage at a time, so the moves
+    after a cutoff are never generated or sorted:
+      1. the best move stored in the transposition table (ORDER_PV)
+      2. the killer moves (ORDER_KILLERS)
+      3. moves that flip a neighbour, most flips first (ORDER_FLIPS)
+      4. every other move
+    The first two stages are checked for legality instead of generated,
+    and later stages skip moves that were already tried. Within a stage,
+    moves are sorted by history (ORDER_HISTORY), then by MoveGenerator's
+    order. Without ORDER_FLIPS, stages 3 and 4 are one stage.
+
+    With dominance pruning, only MoveGenerator.generateNonDominated's
+    moves are yielded. Otherwise every move up to maxCost is.
+     */
+
+    private static final int STAGE_PV = 0;
+    private static final int STAGE_KILLERS = 1;
+    private static final int STAGE_FLIPS = 2;
+    private static final int STAGE_QUIET = 3;
+    private static final int STAGE_DONE = 4;
+
+    private final SearchContext ctx;
+
+    private int[] moves = new int[0];
+    private long[] keys = new long[0];
+    private int count;
+    private int index;
+    private int stage;
+
+    private TileGame state;
+    private int ordering;
+    private int depth;
+    private boolean dominance;
+    private int maxCost;
+    private int pvMove;
+    private int killer;
+
+    // Moves yielded by the first two stages
+    private final int[] tried = new int[3];
+    private int triedCount;
+
+    MovePicker(SearchContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /*
+    Starts yielding the moves of a node
+     */
+    void start(TileGame state, int ordering, int depth, int pvMove, boolean dominance, int maxCost) {
+        this.state = state;
+        this.ordering = ordering;
+        this.depth = depth;
+        this.pvMove = pvMove;
+        this.dominance = dominance;
+        this.maxCost = maxCost;
+        this.stage = STAGE_PV;
+        this.killer = 0;
+        this.triedCount = 0;
+        this.count = 0;
+        this.index = 0;
+    }
+
+    /*
+    Returns the next move, or 0 once every move has been yielded
+     */
+    int next() {
+        while (true) {
+            switch (stage) {
+                case STAGE_PV:
+                    stage = STAGE_KILLERS;
+                    if ((ordering & ABSearchPlayer.ORDER_PV) != 0 && isUsable(pvMove)) {
+                        tried[triedCount++] = pvMove;
+                        return pvMove;
+                    }
+                    break;
+
+                case STAGE_KILLERS:
+                    if ((ordering & ABSearchPlayer.ORDER_KILLERS) != 0 && killer < 2) {
+                        int move = ctx.killer(depth, killer++);
+                        if (!wasTried(move) && isUsable(move)) {
+                            tried[triedCount++] = move;
+                            return move;
+                        }
+                        break;
+                    }
+                    if ((ordering & ABSearchPlayer.ORDER_FLIPS) != 0) {
+                        stage = STAGE_FLIPS;
+                        fill(MoveGenerator.FLIPS);
+                    } else {
+                        stage = STAGE_QUIET;
+                        fill(MoveGenerator.ALL);
+                    }
+                    break;
+
+                case STAGE_FLIPS:
+                    if (index < count) {
+                        return moves[index++];
+                    }
+                    stage = STAGE_QUIET;
+                    fill(MoveGenerator.QUIET);
+                    break;
+
+                case STAGE_QUIET:
+                    if (index < count) {
+                        return moves[index++];
+                    }
+                    stage = STAGE_DONE;
+                    break;
+
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    private boolean isUsable(int move) {
+        if (move == 0) {
+            return false;
+        } else if (dominance) {
+            return MoveGenerator.isNonDominated(state, move);
+        } else {
+            int cost = MoveGenerator.cost(move);
+            return cost <= maxCost && state.isPlayValid(MoveGenerator.row(move), MoveGenerator.col(move), cost);
+        }
+    }
+
+    private boolean wasTried(int move) {
+        for (int i = 0; i < triedCount; i++) {
+            if (tried[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Generates and sorts the moves of one stage
+     */
+    private void fill(int kinds) {
+        int size = MoveGenerator.capacity(state.rows, state.cols, state.getPlayerPool());
+        if (moves.length < size) {
+            moves = new int[size];
+        }
+
+        int generated;
+        if (dominance) {
+            generated = MoveGenerator.generateNonDominated(state, kinds, moves);
+        } else {
+            generated = MoveGenerator.generate(state, state.turn, maxCost, moves);
+        }
+
+        // Drop the moves of other stages, and the ones already tried
+        count = 0;
+        for (int i = 0; i < generated; i++) {
+            int move = moves[i];
+            if (!dominance && kinds != MoveGenerator.ALL
+                    && ((countFlips(state, move) > 0 ? MoveGenerator.FLIPS : MoveGenerator.QUIET) & kinds) == 0) {
+                continue;
+            }
+            if (!wasTried(move)) {
+                moves[count++] = move;
+            }
+        }
+        index = 0;
+
+        if (ordering == 0 || count < 2) {
+            return;
+        }
+        boolean flips = kinds == MoveGenerator.FLIPS;
+        boolean history = (ordering & ABSearchPlayer.ORDER_HISTORY) != 0 && ctx.hasHistory(state);
+        if (!flips && !history) {
+            // Encoded moves sort into MoveGenerator's order
+            Arrays.sort(moves, 0, count);
+            return;
+        }
+
+        if (keys.length < count) {
+            keys = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            // History scores are capped at 2^23, so flips go above them
+            long score = 0;
+            if (flips) {
+                score = (long) countFlips(state, move) << 24;
+            }
+            if (history) {
+                score += ctx.historyScore(move);
+            }
+            // Moves are positive, so the low half sorts ties in generator order
+            keys[i] = (-score << 32) | move;
+        }
+        Arrays.sort(keys, 0, count);
+        for (int i = 0; i < count; i++) {
+            moves[i] = (int) keys[i];
+        }
+    }
+
+    /*
+    Counts the tiles the move would flip
+     */
+    static int countFlips(TileGame state, int move) {
+        int cell = MoveGenerator.row(move) * state.cols + MoveGenerator.col(move);
+        int cost = MoveGenerator.cost(move);
+        Topology topology = state.getTopology();
+
+        int result = 0;
+        for (int i = 0, n = topology.getNeighbourCount(cell); i < n; i++) {
+            if (isFlip(state.getRaw(topology.getNeighbour(cell, i)), state.turn, cost)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /*
+    Determines if the player flips a tile with this raw value by playing the cost
+     */
+    private static boolean isFlip(int raw, int player, int cost) {
+        return player == TileGame.PLAYER1 ? raw < -1 && -1 - raw < cost : raw > 1 && raw - 1 < cost;
+    }
+}
@@ -0,0 +1,184 @@
+package players;
+
+import tilegame.Symmetry;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+
+public class OpeningBook {
+
+    /**
+     * Precomputed moves for the first plies of a rows x cols x pool
+     * game on one topology (see OpeningBookGenerator).
+     *
+     * Each entry maps the hash of a position's canonical representative
+     * (see Symmetry) to the best move in that canonical position, so
+     * one entry covers every rotation and reflection of the position.
+     * Lookups map the move back onto the board being played.
+     *
+     * Books are saved as a header followed by (key, move) pairs sorted
+     * by key, 12 bytes per entry, and looked up by binary search.
+     */
+
+    private static final int MAGIC = 0x54474F42; // "TGOB"
+    private static final int VERSION = 2;
+
+    public final int topology;
+    public final int rows;
+    public final int cols;
+    public final int pool;
+    public final int plies;
+
+    private final Symmetry symmetry;
+
+    // Sorted canonical hashes, and their moves encoded as by MoveGenerator
+    private final long[] keys;
+    private final int[] moves;
+
+    private OpeningBook(int topology, int rows, int cols, int pool, int plies, long[] keys, int[] moves) {
+        this.topology = topology;
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.plies = plies;
+        this.symmetry = new Symmetry(Topology.of(topology, rows, cols));
+        this.keys = keys;
+        this.moves = moves;
+    }
+
+    /**
+     * @param topology the kind of board, such as Topology.SQUARE
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @param plies the number of plies the book covers
+     * @param entries canonical hashes and their canonical moves,
+     *                encoded as by MoveGenerator
+     */
+    OpeningBook(int topology, int rows, int cols, int pool, int plies, Map<Long, Integer> entries) {
+        this(topology, rows, cols, pool, plies, new long[entries.size()], new int[entries.size()]);
+
+        Long[] sorted = entries.keySet().toArray(new Long[0]);
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = sorted[i];
+            moves[i] = entries.get(sorted[i]);
+        }
+    }
+
+    /**
+     * @return the number of positions in the book
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Looks up the book move for a position.
+     * @param game the current position
+     * @return the book move, or null if the position isn't in the book
+     */
+    public Move lookup(TileGame game) {
+        // Hashes don't include the topology, so other boards must be ruled out here
+        if (game.rows != rows || game.cols != cols || game.getTopology().kind != topology) {
+            return null;
+        }
+
+        int i = symmetry.canonicalIndex(game);
+        int index = Arrays.binarySearch(keys, symmetry.hash(i, game));
+        if (index < 0) {
+            return null;
+        }
+
+        // Map the move out of the canonical frame
+        int move = moves[index];
+        int cell = symmetry.sourceCell(i, MoveGenerator.row(move) * cols + MoveGenerator.col(move));
+        int row = cell / cols;
+        int col = cell % cols;
+        int cost = MoveGenerator.cost(move);
+
+        // Guards against hash collisions with positions outside of the book
+        if (!game.isPlayValid(row, col, cost)) {
+            return null;
+        }
+        return new Move(row, col, cost);
+    }
+
+    /**
+     * Writes the book to a file. The file is written under a temporary
+     * name and then renamed, so an interrupted save never destroys the
+     * previous file.
+     * @param file where to write the book
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(topology);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(pool);
+            out.writeInt(plies);
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                out.writeLong(keys[i]);
+                out.writeInt(moves[i]);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a book written by save.
+     * @param file the file to read
+     * @return the loaded book
+     * @throws IOException if the file can't be read or isn't a book
+     */
+    public static OpeningBook load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not an opening book");
+            }
+            int topology = in.readInt();
+            int rows = in.readInt();
+            int cols = in.readInt();
+            int pool = in.readInt();
+            int plies = in.readInt();
+            int count = in.readInt();
+
+            long[] keys = new long[count];
+            int[] moves = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = in.readLong();
+                moves[i] = in.readInt();
+                if (i > 0 && keys[i] <= keys[i - 1]) {
+                    throw new IOException(file + " is not sorted");
+                }
+            }
+            if (topology < Topology.SQUARE || topology > Topology.EIGHT_NEIGHBOUR) {
+                throw new IOException(file + " has an unknown topology " + topology);
+            }
+            return new OpeningBook(topology, rows, cols, pool, plies, keys, moves);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%dx%d %s opening book, %d plies, %d positions",
+                rows, cols, pool, Topology.name(topology), plies, keys.length);
+    }
+}
@@ -0,0 +1,193 @@
+package players;
+
+import tilegame.Symmetry;
+import tilegame.TileGame;
+import tilegame.Topology;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+public class OpeningBookGenerator {
+
+    /**
+     * Builds an OpeningBook by searching every position in the first
+     * plies of a game that a book player can face.
+     *
+     * A book player follows the book, while the opponent may play any
+     * move, so the book holds one searched move for each position where
+     * the book player is to move and every earlier move of theirs came
+     * from the book. This is done once with Player 1 and once with
+     * Player 2 following the book. Positions that are rotations or
+     * reflections of each other are only searched once.
+     *
+     * ABSearchPlayer searchers are silenced with SearchListener.NONE,
+     * so only the generator's progress is printed.
+     */
+
+    public final int topology;
+    public final int rows;
+    public final int cols;
+    public final int pool;
+    public final int plies;
+
+    private final Symmetry symmetry;
+    private final Player[] searchers = new Player[2];
+
+    // Canonical hash -> canonical move, encoded as by MoveGenerator
+    private final HashMap<Long, Integer> entries = new HashMap<>();
+
+    // Canonical hashes expanded so far, per book player
+    private final List<Set<Long>> expanded = List.of(new HashSet<>(), new HashSet<>());
+
+    private long searches;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @param plies the number of plies to cover, counting both players' moves
+     * @param searcher creates the player that searches for the given side
+     */
+    public OpeningBookGenerator(int rows, int cols, int pool, int plies, IntFunction<Player> searcher) {
+        this(Topology.SQUARE, rows, cols, pool, plies, searcher);
+    }
+
+    /**
+     * @param topology the kind of board, such as Topology.HEX
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @param plies the number of plies to cover, counting both players' moves
+     * @param searcher creates the player that searches for the given side
+     */
+    public OpeningBookGenerator(int topology, int rows, int cols, int pool, int plies, IntFunction<Player> searcher) {
+        if (plies < 1) {
+            throw new IllegalArgumentException("plies must be at least 1");
+        }
+        this.topology = topology;
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.plies = plies;
+        this.symmetry = new Symmetry(Topology.of(topology, rows, cols));
+        this.searchers[TileGame.PLAYER1] = searcher.apply(TileGame.PLAYER1);
+        this.searchers[TileGame.PLAYER2] = searcher.apply(TileGame.PLAYER2);
+        for (Player player : searchers) {
+            if (player instanceof ABSearchPlayer) {
+                ((ABSearchPlayer) player).setSearchListener(SearchListener.NONE);
+            }
+        }
+    }
+
+    /**
+     * @return the number of searches made so far
+     */
+    public long getSearchCount() {
+        return searches;
+    }
+
+    /**
+     * Searches every book position.
+     * @return the finished book
+     */
+    public OpeningBook generate() {
+        expand(new TileGame(rows, cols, pool, topology), 0, TileGame.PLAYER1);
+        expand(new TileGame(rows, cols, pool, topology), 0, TileGame.PLAYER2);
+        System.out.printf("\r%d positions searched%n", searches);
+        return new OpeningBook(topology, rows, cols, pool, plies, entries);
+    }
+
+    private void expand(TileGame game, int ply, int bookPlayer) {
+        if (ply >= plies || game.isGameForfeitable()) {
+            return;
+        }
+
+        int i = symmetry.canonicalIndex(game);
+        long key = symmetry.hash(i, game);
+        if (!expanded.get(bookPlayer).add(key)) {
+            return;
+        }
+
+        if (game.turn == bookPlayer) {
+            // Follow the book move
+            Integer known = entries.get(key);
+            int row;
+            int col;
+            int cost;
+            if (known == null) {
+                Move move = search(game);
+                row = move.row;
+                col = move.col;
+                cost = move.cost;
+                int cell = symmetry.mapCell(i, row * cols + col);
+                entries.put(key, MoveGenerator.encode(cell / cols, cell % cols, cost));
+            } else {
+                int cell = symmetry.sourceCell(i, MoveGenerator.row(known) * cols + MoveGenerator.col(known));
+                row = cell / cols;
+                col = cell % cols;
+                cost = MoveGenerator.cost(known);
+            }
+            expand(game.copyAndPlay(row, col, cost), ply + 1, bookPlayer);
+
+        } else {
+            // Try every reply, once per symmetric group
+            int[] moves = new int[MoveGenerator.capacity(rows, cols, game.getPlayerPool())];
+            int count = MoveGenerator.generate(game, game.turn, Integer.MAX_VALUE, moves);
+            HashSet<Long> seen = new HashSet<>();
+            for (int m = 0; m < count; m++) {
+                int move = moves[m];
+                TileGame next = game.copyAndPlay(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+                if (seen.add(symmetry.canonicalHash(next))) {
+                    expand(next, ply + 1, bookPlayer);
+                }
+            }
+        }
+    }
+
+    /*
+    Searches one position
+     */
+    private Move search(TileGame game) {
+        Move move = searchers[game.turn].getNextMove(game.copy());
+        searches++;
+        System.out.printf("\r%d positions searched...", searches);
+        return move;
+    }
+
+    /**
+     * Generates a book with a PVS search and writes it to a file.
+     * Usage: OpeningBookGenerator rows cols pool plies book [depth] [topology]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: OpeningBookGenerator rows cols pool plies book [depth] [topology]");
+            return;
+        }
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        int pool = Integer.parseInt(args[2]);
+        int plies = Integer.parseInt(args[3]);
+        File file = new File(args[4]);
+        int depth = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+        int topology = args.length > 6 ? Topology.parse(args[6]) : Topology.SQUARE;
+
+        OpeningBookGenerator generator = new OpeningBookGenerator(topology, rows, cols, pool, plies, player -> {
+            ABSearchPlayer search = new ABSearchPlayer(player, depth);
+            search.setSearchMode(ABSearchPlayer.SEARCH_PVS);
+            search.setMoveOrdering(ABSearchPlayer.ORDER_ALL);
+            search.setTranspositionTable(new TranspositionTable(1 << 20));
+            search.setSymmetryReduction(true);
+            return search;
+        });
+
+        long start = System.nanoTime();
+        OpeningBook book = generator.generate();
+        book.save(file);
+        System.out.printf("Wrote %s to %s in %d ms%n", book, file, (System.nanoTime() - start) / 1000000);
+    }
+}
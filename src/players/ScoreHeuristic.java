@@ -0,0 +1,27 @@
+package players;
+
+import tilegame.TileGame;
+
+public class ScoreHeuristic implements Heuristic {
+
+    /**
+     * A greedy heuristic that only counts tiles. Unlike the estimate
+     * of ABSearchPlayer, it gives no credit for pool left to spend.
+     * Mostly useful as a baseline to measure other heuristics against.
+     */
+
+    @Override
+    public float estimate(TileGame startBoard, TileGame endBoard) {
+        return endBoard.getScore() - startBoard.getScore();
+    }
+
+    @Override
+    public long contextKey(TileGame startBoard) {
+        return startBoard.getScore();
+    }
+
+    @Override
+    public float calculate(TileGame endBoard) {
+        return endBoard.getScore() * 10000.0f;
+    }
+}
@@ -0,0 +1,177 @@
+package players;
+
+import tilegame.TileGame;
+
+import java.util.Arrays;
+
+class SearchContext {
+
+    /*
+    Holds the scratch state of one search thread, so several
+    threads can search for the same player at once.
+     */
+
+    // Per-depth move pickers, since a node's moves stay in use while its children are searched
+    private MovePicker[] pickers = new MovePicker[0];
+
+    // Two killer moves per depth: the latest moves that caused a cutoff
+    private int[][] killers = new int[0][];
+
+    // History heuristic, indexed by (cell, cost)
+    private static final int HISTORY_COSTS = 128;
+    private int[] history = new int[0];
+    private int historyCols;
+
+    // The depth the current root search started with, which leaf estimates are scaled for
+    int searchDepth;
+
+    // Counters since the last resetCounters, see SearchStatistics
+    long nodes;
+    long expanded;
+    long children;
+    long[] cutoffs = new long[0];
+
+    // The clock is only read once every this many nodes
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private long deadline = Long.MAX_VALUE;
+    private int clockCounter;
+    private boolean aborted;
+
+    // Set by another thread to end the search early
+    private volatile boolean stopped;
+
+    /*
+    Prepares for a new search that must finish by the given System.nanoTime()
+     */
+    void startSearch(long deadline) {
+        resetCounters();
+        this.deadline = deadline;
+        this.clockCounter = 0;
+        this.aborted = stopped || (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline);
+    }
+
+    /*
+    Called once per node. Returns true once the deadline has passed or
+    the search was stopped, after which the search should unwind
+    without trusting its values.
+     */
+    boolean isTimeUp() {
+        if (!aborted && ++clockCounter >= CLOCK_INTERVAL) {
+            clockCounter = 0;
+            aborted = stopped || (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline);
+        }
+        return aborted;
+    }
+
+    /*
+    Ends the search from another thread, within CLOCK_INTERVAL nodes
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    /*
+    Counts a beta cutoff at the given distance from the root
+     */
+    void countCutoff(int ply) {
+        // Lazy SMP helpers search deeper than searchDepth, and count their extra plies as ply 0
+        ply = Integer.max(0, ply);
+        if (cutoffs.length <= ply) {
+            cutoffs = Arrays.copyOf(cutoffs, ply + 1);
+        }
+        cutoffs[ply]++;
+    }
+
+    void resetCounters() {
+        nodes = 0;
+        expanded = 0;
+        children = 0;
+        Arrays.fill(cutoffs, 0);
+    }
+
+    /*
+    Gets the move picker for the given search depth
+     */
+    MovePicker picker(int depth) {
+        if (pickers.length <= depth) {
+            int old = pickers.length;
+            pickers = Arrays.copyOf(pickers, depth + 1);
+            for (int d = old; d <= depth; d++) {
+                pickers[d] = new MovePicker(this);
+            }
+        }
+        return pickers[depth];
+    }
+
+    /*
+    Returns one of the two killer moves at the given depth, or 0
+     */
+    int killer(int depth, int i) {
+        return depth < killers.length ? killers[depth][i] : 0;
+    }
+
+    /*
+    Records a move that caused a cutoff at the given depth
+     */
+    void recordCutoff(int ordering, int depth, TileGame state, int move) {
+        if ((ordering & ABSearchPlayer.ORDER_KILLERS) != 0) {
+            if (killers.length <= depth) {
+                int[][] grown = Arrays.copyOf(killers, depth + 1);
+                for (int d = killers.length; d <= depth; d++) {
+                    grown[d] = new int[2];
+                }
+                killers = grown;
+            }
+            if (killers[depth][0] != move) {
+                killers[depth][1] = killers[depth][0];
+                killers[depth][0] = move;
+            }
+        }
+        if ((ordering & ABSearchPlayer.ORDER_HISTORY) != 0) {
+            if (historyCols != state.cols || history.length < state.rows * state.cols * HISTORY_COSTS) {
+                history = new int[state.rows * state.cols * HISTORY_COSTS];
+                historyCols = state.cols;
+            }
+            int index = historyIndex(move);
+            if (index < history.length) {
+                history[index] = Integer.min(history[index] + depth * depth, 1 << 23);
+            }
+        }
+    }
+
+    /*
+    Forgets the killer moves, which only make sense within one search.
+    History is halved so that it slowly favours recent searches.
+     */
+    void clearOrdering() {
+        for (int[] pair : killers) {
+            pair[0] = 0;
+            pair[1] = 0;
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    private int historyIndex(int move) {
+        int cost = MoveGenerator.cost(move);
+        if (cost >= HISTORY_COSTS) {
+            return Integer.MAX_VALUE;
+        }
+        return (MoveGenerator.row(move) * historyCols + MoveGenerator.col(move)) * HISTORY_COSTS + cost;
+    }
+
+    boolean hasHistory(TileGame state) {
+        return historyCols == state.cols && history.length > 0;
+    }
+
+    int historyScore(int move) {
+        int index = historyIndex(move);
+        return index < history.length ? history[index] : 0;
+    }
+}
@@ -0,0 +1,65 @@
+package players;
+
+import tilegame.TileGame;
+
+public interface SearchListener {
+
+    /**
+     * Receives progress and statistics from ABSearchPlayer.
+     * Every method does nothing by default, and none are called from
+     * inside the tree search, so a listener costs nothing per node.
+     * With more than one search thread, rootMoveStarted and
+     * rootMoveSearched may be called from several threads at once.
+     */
+
+    /** Ignores every event */
+    SearchListener NONE = new SearchListener() {
+    };
+
+    /**
+     * Called when getNextMove starts searching.
+     * @param search the searching player
+     * @param game the position being searched
+     * @param moveCount the number of legal moves
+     * @param searchedMoves the number of moves that will be searched,
+     *                      after pruning moves that can't matter
+     */
+    default void searchStarted(ABSearchPlayer search, TileGame game, int moveCount, int searchedMoves) {
+    }
+
+    /**
+     * Called before each root move is searched.
+     * @param move the root move
+     * @param index the move's place in the search order
+     */
+    default void rootMoveStarted(Move move, int index) {
+    }
+
+    /**
+     * Called after each root move is searched.
+     * @param move the root move
+     * @param index the move's place in the search order
+     * @param nodes the nodes visited searching the move
+     * @param nanos the time taken to search the move
+     */
+    default void rootMoveSearched(Move move, int index, long nodes, long nanos) {
+    }
+
+    /**
+     * Called after each iteration of a time-bounded search.
+     * @param depth the depth that was searched
+     * @param best the best move at that depth
+     * @param nanos the time the iteration took
+     */
+    default void iterationFinished(int depth, Move best, long nanos) {
+    }
+
+    /**
+     * Called when getNextMove is about to return.
+     * @param search the searching player
+     * @param best the chosen move, or null if there was none
+     * @param statistics the counters collected during the search
+     */
+    default void searchFinished(ABSearchPlayer search, Move best, SearchStatistics statistics) {
+    }
+}
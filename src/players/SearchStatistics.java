@@ -0,0 +1,164 @@
+package players;
+
+import java.util.Arrays;
+
+public class SearchStatistics {
+
+    /**
+     * Counters collected by one call to ABSearchPlayer.getNextMove.
+     * Counts include every iteration of a time-bounded search and
+     * every re-search, so they measure the work done, not the size
+     * of the tree.
+     */
+
+    private long nodes;
+    private long expanded;
+    private long children;
+    private long[] cutoffs = new long[0];
+
+    private int rootMoves;
+    private long rootNanos;
+    private int depth;
+    private long nanos;
+
+    private long tableProbes;
+    private long tableHits;
+    private long tableCutoffs;
+
+    /*
+    Adds the counters of a search thread
+     */
+    synchronized void add(SearchContext ctx) {
+        nodes += ctx.nodes;
+        expanded += ctx.expanded;
+        children += ctx.children;
+        if (cutoffs.length < ctx.cutoffs.length) {
+            cutoffs = Arrays.copyOf(cutoffs, ctx.cutoffs.length);
+        }
+        for (int ply = 0; ply < ctx.cutoffs.length; ply++) {
+            cutoffs[ply] += ctx.cutoffs[ply];
+        }
+    }
+
+    synchronized void addRootMove(long nanos) {
+        rootMoves++;
+        rootNanos += nanos;
+    }
+
+    void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /*
+    Records the totals once the search is over. The table's counters
+    are given as they were before the search started.
+     */
+    void finish(long nanos, TranspositionTable table, long probes, long hits, long cutoffs) {
+        this.nanos = nanos;
+        if (table != null) {
+            tableProbes = table.getProbes() - probes;
+            tableHits = table.getHits() - hits;
+            tableCutoffs = table.getCutoffs() - cutoffs;
+        }
+    }
+
+    /**
+     * @return the number of nodes visited, including leaves
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of nodes whose moves were generated
+     */
+    public long getExpandedNodes() {
+        return expanded;
+    }
+
+    /**
+     * @return the average number of moves searched per expanded node
+     */
+    public double getBranchingFactor() {
+        return expanded == 0 ? 0 : (double) children / expanded;
+    }
+
+    /**
+     * @param ply the distance from the root, where 0 is the root
+     * @return the number of beta cutoffs at that ply
+     */
+    public long getCutoffs(int ply) {
+        return ply < cutoffs.length ? cutoffs[ply] : 0;
+    }
+
+    /**
+     * @return the number of plies with cutoffs recorded for them
+     */
+    public int getCutoffPlies() {
+        return cutoffs.length;
+    }
+
+    /**
+     * @return the number of root moves searched, counting each iteration
+     */
+    public int getRootMoves() {
+        return rootMoves;
+    }
+
+    /**
+     * @return the mean time spent on a root move in nanoseconds
+     */
+    public long getNanosPerRootMove() {
+        return rootMoves == 0 ? 0 : rootNanos / rootMoves;
+    }
+
+    /**
+     * @return the deepest search that finished
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the time the whole search took in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    public double getNodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    /**
+     * @return the number of nodes answered by the transposition table
+     */
+    public long getTableCutoffs() {
+        return tableCutoffs;
+    }
+
+    public double getTableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(
+                "depth %d, %d nodes in %d ms (%.0f nodes/s), branching factor %.2f, %d root moves at %.2f ms",
+                depth, nodes, nanos / 1000000, getNodesPerSecond(), getBranchingFactor(),
+                rootMoves, getNanosPerRootMove() / 1e6));
+        if (tableProbes > 0) {
+            builder.append(String.format(", table hits %.1f%%", 100 * getTableHitRate()));
+        }
+        builder.append(", cutoffs per ply ").append(Arrays.toString(cutoffs));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,312 @@
+package players;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TranspositionTable {
+
+    /**
+     * A fixed-size transposition table for the alpha-beta search.
+     * Entries are keyed by TileGame.getHash() and stored in a single
+     * array, so the memory use is fixed when the table is created.
+     * Each slot holds a single entry; collisions are resolved by the
+     * replacement policy.
+     *
+     * Entries hold either float values (store/value), used by the
+     * alpha-beta search, or int scores (storeScore/score), used by
+     * the PVS search. A table should only be used by one kind of
+     * search at a time.
+     *
+     * The table is lock-free, so any number of search threads can
+     * share one, as ABSearchPlayer's Lazy SMP search does. An entry is
+     * a pair of longs: a data word packing the value, depth, flag and
+     * best move, and the key XOR the data word. probe only accepts an
+     * entry whose pair gives back its key, so an entry torn by racing
+     * writers reads as a miss instead of another position's value.
+     */
+
+    // Entry types
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    // Replacement policies
+    /** Always overwrite the slot with the newest entry */
+    public static final int REPLACE_ALWAYS = 0;
+    /** Keep the deeper entry, unless the stored one is from an older search */
+    public static final int REPLACE_DEPTH_PREFERRED = 1;
+
+    /** Returned by probe when the table holds no entry for a position */
+    public static final long MISS = 0;
+
+    // Data word layout: value in bits 0-31, then flag + 1, depth and move
+    private static final int FLAG_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 34;
+    private static final int MOVE_SHIFT = 41;
+    private static final int MAX_DEPTH = 127;
+    private static final int MOVE_BITS = 23;
+
+    // Keys are salted with the age, so entries of older searches never match
+    private static final long AGE_SALT = 0x9E3779B97F4A7C15L;
+
+    private final int mask;
+    private final int policy;
+
+    // Per slot, key ^ data followed by data
+    private final long[] entries;
+    // Age of each slot's latest store. Racy, but only used to pick entries to replace.
+    private final byte[] ages;
+
+    private byte age = 0;
+
+    // Statistics
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder overwrites = new LongAdder();
+
+    /**
+     * Creates a table using the depth-preferred replacement policy.
+     * @param capacity the number of entries, rounded up to a power of 2
+     */
+    public TranspositionTable(int capacity) {
+        this(capacity, REPLACE_DEPTH_PREFERRED);
+    }
+
+    /**
+     * @param capacity the number of entries, rounded up to a power of 2.
+     *                 Each entry takes 17 bytes.
+     * @param policy either REPLACE_ALWAYS or REPLACE_DEPTH_PREFERRED
+     */
+    public TranspositionTable(int capacity, int policy) {
+        if (capacity <= 0 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^29");
+        }
+        if (policy != REPLACE_ALWAYS && policy != REPLACE_DEPTH_PREFERRED) {
+            throw new IllegalArgumentException("unknown replacement policy " + policy);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.mask = size - 1;
+        this.policy = policy;
+
+        entries = new long[2 * size];
+        ages = new byte[size];
+    }
+
+    /**
+     * Starts a new search. Entries stored by earlier searches are
+     * ignored from now on, since leaf estimates depend on the board
+     * the search started from. Must not be called while a search is
+     * using the table.
+     */
+    public void newSearch() {
+        if (++age == 0) {
+            // The age wrapped around, so old entries could look current again
+            clear();
+        }
+    }
+
+    /**
+     * Removes every entry from the table. Must not be called while a
+     * search is using the table.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        Arrays.fill(ages, (byte) 0);
+    }
+
+    /**
+     * Looks up the entry for a position.
+     * @param key the position hash
+     * @return the entry's data word, to read with value, score, depth,
+     * flag and move, or MISS if there is none
+     */
+    public long probe(long key) {
+        probes.increment();
+        int slot = (int) key & mask;
+        long data = entries[2 * slot + 1];
+        if (data != MISS && (entries[2 * slot] ^ data) == salt(key)) {
+            hits.increment();
+            return data;
+        }
+        return MISS;
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return the stored value
+     */
+    public static float value(long entry) {
+        return Float.intBitsToFloat((int) entry);
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return the stored score, for entries written by storeScore
+     */
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return the remaining depth the stored value was searched to,
+     * at most 127
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int flag(long entry) {
+        return ((int) (entry >>> FLAG_SHIFT) & 3) - 1;
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return the best move found for the position, encoded as by
+     * MoveGenerator, or 0 if none is known
+     */
+    public static int move(long entry) {
+        return (int) (entry >>> MOVE_SHIFT);
+    }
+
+    /**
+     * Records that a stored entry was able to end a search early.
+     * Used to report how much of the search the table saves.
+     */
+    public void recordCutoff() {
+        cutoffs.increment();
+    }
+
+    /**
+     * Stores a search result, subject to the replacement policy.
+     * @param key the position hash
+     * @param depth the remaining depth of the search
+     * @param value the value found by the search
+     * @param flag EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public void store(long key, int depth, float value, int flag) {
+        store(key, depth, value, flag, 0);
+    }
+
+    /**
+     * Stores a search result, subject to the replacement policy.
+     * @param key the position hash
+     * @param depth the remaining depth of the search
+     * @param value the value found by the search
+     * @param flag EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param move the best move found, encoded as by MoveGenerator, or 0
+     */
+    public void store(long key, int depth, float value, int flag, int move) {
+        storeScore(key, depth, Float.floatToRawIntBits(value), flag, move);
+    }
+
+    /**
+     * Stores an int search result, subject to the replacement policy.
+     * Depths above 127 are stored as 127, and moves costing more than
+     * 127 are stored as 0.
+     * @param key the position hash
+     * @param depth the remaining depth of the search
+     * @param score the score found by the search
+     * @param flag EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param move the best move found, encoded as by MoveGenerator, or 0
+     */
+    public void storeScore(long key, int depth, int score, int flag, int move) {
+        int slot = (int) key & mask;
+        long salted = salt(key);
+
+        long old = entries[2 * slot + 1];
+        if (old != MISS && (entries[2 * slot] ^ old) != salted) {
+            if (policy == REPLACE_DEPTH_PREFERRED && ages[slot] == age && depth(old) > depth) {
+                return;
+            }
+            overwrites.increment();
+        }
+
+        stores.increment();
+        long data = (score & 0xFFFFFFFFL)
+                | ((long) (flag + 1) << FLAG_SHIFT)
+                | ((long) Integer.max(0, Integer.min(depth, MAX_DEPTH)) << DEPTH_SHIFT)
+                | ((move >>> MOVE_BITS) == 0 ? (long) move << MOVE_SHIFT : 0);
+        entries[2 * slot] = salted ^ data;
+        entries[2 * slot + 1] = data;
+        ages[slot] = age;
+    }
+
+    private long salt(long key) {
+        return key ^ (age * AGE_SALT);
+    }
+
+    /**
+     * @return the number of entries the table can hold
+     */
+    public int capacity() {
+        return ages.length;
+    }
+
+    /**
+     * @return the number of lookups since the statistics were reset
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * @return the number of lookups that found an entry
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that ended a search early
+     */
+    public long getCutoffs() {
+        return cutoffs.sum();
+    }
+
+    /**
+     * @return the number of entries written
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return the number of entries that replaced a different position
+     */
+    public long getOverwrites() {
+        return overwrites.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that found an entry, 0 <= result <= 1
+     */
+    public float getHitRate() {
+        long p = probes.sum();
+        return p == 0 ? 0.0f : (float) hits.sum() / p;
+    }
+
+    public void resetStatistics() {
+        probes.reset();
+        hits.reset();
+        cutoffs.reset();
+        stores.reset();
+        overwrites.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d probes, %d hits (%.1f%%), %d cutoffs, %d stores, %d overwrites",
+                getProbes(), getHits(), 100.0f * getHitRate(), getCutoffs(), getStores(), getOverwrites());
+    }
+}
@@ -0,0 +1,236 @@
+package records;
+
+import players.ABSearchPlayer;
+import players.MoveGenerator;
+import players.TranspositionTable;
+import solver.PerfectSolver;
+import tilegame.TileGame;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+public class GameAnalyzer {
+
+    /**
+     * Replays a stream of game records and annotates every position
+     * with a value, such as a search value or the exact game value.
+     *
+     * Records are read one at a time and analyzed on a thread pool,
+     * with a bounded number in flight, so any number of games can be
+     * analyzed in constant memory. The annotations are written in the
+     * order the records were read, one line per position:
+     *
+     *     game ply hash row,col,cost value
+     *
+     * where game counts records from 0, hash is the position's
+     * TileGame.getHash in hex, the move is the one played from the
+     * position, and the value is for Player 1.
+     */
+
+    /**
+     * Values positions. Each analysis thread gets its own evaluator,
+     * so evaluators don't need to be thread safe.
+     */
+    public interface Evaluator {
+        /**
+         * @param record the game being analyzed
+         * @param position a position of the game
+         * @return the value of the position for Player 1
+         */
+        float evaluate(GameRecord record, TileGame position);
+    }
+
+    // Records in flight per thread, enough to keep every thread busy
+    private static final int PENDING_PER_THREAD = 16;
+
+    private final ThreadLocal<Evaluator> evaluators;
+
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    private long positions;
+
+    /**
+     * @param evaluators creates the evaluator for each analysis thread
+     */
+    public GameAnalyzer(Supplier<Evaluator> evaluators) {
+        this.evaluators = ThreadLocal.withInitial(evaluators);
+    }
+
+    /**
+     * @param threads the number of records analyzed at once, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @return the number of positions annotated by the latest call to analyze
+     */
+    public long getPositionCount() {
+        return positions;
+    }
+
+    /**
+     * Evaluates positions with a fixed-depth PVS search, as
+     * ABSearchPlayer.getSearchValue reports it.
+     * @param depth the search depth
+     * @return a supplier of search evaluators
+     */
+    public static Supplier<Evaluator> search(int depth) {
+        return () -> {
+            ABSearchPlayer[] searches = new ABSearchPlayer[2];
+            for (int side = 0; side < 2; side++) {
+                searches[side] = new ABSearchPlayer(side, depth);
+                searches[side].setVerbose(false);
+                searches[side].setSearchMode(ABSearchPlayer.SEARCH_PVS);
+                searches[side].setMoveOrdering(ABSearchPlayer.ORDER_ALL);
+                searches[side].setTranspositionTable(new TranspositionTable(1 << 16));
+            }
+            return (record, position) -> {
+                if (position.isGameForfeitable()) {
+                    return searches[0].calculate(position);
+                }
+                ABSearchPlayer search = searches[position.turn];
+                search.getNextMove(position.copy());
+                return search.getSearchValue();
+            };
+        };
+    }
+
+    /**
+     * Evaluates positions with their exact game value (see
+     * PerfectSolver). Each thread keeps a solver per board size, so
+     * this is only practical for small boards.
+     * @param capacity the number of positions each solver's table holds
+     * @return a supplier of exact evaluators
+     */
+    public static Supplier<Evaluator> exact(int capacity) {
+        return () -> {
+            Map<String, PerfectSolver> solvers = new HashMap<>();
+            return (record, position) -> {
+                String board = record.rows + "x" + record.cols + "x" + record.pool;
+                PerfectSolver solver = solvers.computeIfAbsent(board,
+                        key -> new PerfectSolver(record.rows, record.cols, record.pool, capacity));
+                return solver.solve(position);
+            };
+        };
+    }
+
+    /**
+     * Annotates every position of every record.
+     * @param in the records to analyze
+     * @param out where the annotations are written
+     * @return the number of records analyzed
+     * @throws IOException if a record can't be read or written, or has an illegal move
+     */
+    public long analyze(GameRecordReader in, Writer out) throws IOException {
+        positions = 0;
+        long games = 0;
+        if (threads == 1) {
+            for (GameRecord record = in.next(); record != null; record = in.next()) {
+                out.write(annotate(games++, record));
+                positions += record.size();
+            }
+            return games;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+            for (GameRecord next = in.next(); next != null; next = in.next()) {
+                GameRecord record = next;
+                long game = games++;
+                pending.add(executor.submit(() -> annotate(game, record)));
+                positions += record.size();
+                if (pending.size() >= threads * PENDING_PER_THREAD) {
+                    out.write(result(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.write(result(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return games;
+    }
+
+    private static String result(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to analyze a record", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing records", e);
+        }
+    }
+
+    /*
+    Replays one record, returning its annotation lines
+     */
+    private String annotate(long game, GameRecord record) throws IOException {
+        Evaluator evaluator = evaluators.get();
+        StringBuilder lines = new StringBuilder(48 * record.size());
+        try {
+            record.replay((r, ply, position, move) -> {
+                float value = evaluator.evaluate(r, position);
+                String hash = Long.toHexString(position.getHash());
+                lines.append(game).append(' ').append(ply).append(' ');
+                for (int i = hash.length(); i < 16; i++) {
+                    lines.append('0');
+                }
+                lines.append(hash).append(' ')
+                        .append(MoveGenerator.row(move)).append(',')
+                        .append(MoveGenerator.col(move)).append(',')
+                        .append(MoveGenerator.cost(move)).append(' ')
+                        .append(value).append('\n');
+            });
+        } catch (IllegalStateException e) {
+            throw new IOException(String.format("Game %d: %s", game, e.getMessage()), e);
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Annotates a record file and writes the annotations to the console.
+     * Usage: GameAnalyzer records depth|exact [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: GameAnalyzer records depth|exact [threads]");
+            return;
+        }
+        GameAnalyzer analyzer = new GameAnalyzer(args[1].equals("exact")
+                ? exact(1 << 20) : search(Integer.parseInt(args[1])));
+        if (args.length > 2) {
+            analyzer.setThreads(Integer.parseInt(args[2]));
+        }
+
+        long start = System.nanoTime();
+        long games;
+        try (GameRecordReader in = new GameRecordReader(new File(args[0]))) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            games = analyzer.analyze(in, out);
+            out.flush();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Analyzed %d games, %d positions in %.1f s (%.0f positions/s)%n",
+                games, analyzer.getPositionCount(), seconds, analyzer.getPositionCount() / seconds);
+    }
+}
@@ -0,0 +1,214 @@
+package records;
+
+import players.Move;
+import players.MoveGenerator;
+import tilegame.TileGame;
+
+import java.util.Arrays;
+
+public class GameRecord {
+
+    /**
+     * The moves of one game and the board it was played on, enough to
+     * replay the game from the empty board.
+     *
+     * Moves are kept encoded as by MoveGenerator. The winner is stored
+     * as well, since a game that ends by forfeit (an illegal move in a
+     * Tournament) can't be scored by replaying it.
+     *
+     * The text form is one line per game: the board, the winner and
+     * the moves, as in "3x3x10 P1 1,1,3 0,1,2 ...". The winner is P1,
+     * P2 or draw.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+
+    private int[] moves;
+    private int count;
+    private int winner = TileGame.NO_PLAYER;
+
+    /**
+     * Creates a record with no moves.
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     */
+    public GameRecord(int rows, int cols, int pool) {
+        this(rows, cols, pool, new int[8], 0);
+    }
+
+    /*
+    Used internally to duplicate and parse records
+     */
+    private GameRecord(int rows, int cols, int pool, int[] moves, int count) {
+        if (rows <= 0 || cols <= 0 || pool < 0) {
+            throw new IllegalArgumentException(String.format("Invalid board %dx%dx%d", rows, cols, pool));
+        }
+        MoveGenerator.checkEncodable(rows, cols, pool);
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.moves = moves;
+        this.count = count;
+    }
+
+    /**
+     * @return a duplicate of the record
+     */
+    public GameRecord copy() {
+        GameRecord result = new GameRecord(rows, cols, pool, Arrays.copyOf(moves, Integer.max(count, 8)), count);
+        result.winner = winner;
+        return result;
+    }
+
+    /**
+     * Appends a move. Moves aren't checked until the record is replayed.
+     * @param move the move, encoded as by MoveGenerator
+     */
+    public void add(int move) {
+        if (count == moves.length) {
+            moves = Arrays.copyOf(moves, 2 * count);
+        }
+        moves[count++] = move;
+    }
+
+    /**
+     * Appends a move. Moves aren't checked until the record is replayed.
+     * @param move the move
+     */
+    public void add(Move move) {
+        add(MoveGenerator.encode(move));
+    }
+
+    /**
+     * @return the number of moves
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param ply the 0-indexed move number
+     * @return the move, encoded as by MoveGenerator
+     */
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= count) {
+            throw new IndexOutOfBoundsException(String.format("Move %d of %d", ply, count));
+        }
+        return moves[ply];
+    }
+
+    /**
+     * @return TileGame.PLAYER1, TileGame.PLAYER2, or TileGame.NO_PLAYER for a draw
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * @param winner TileGame.PLAYER1, TileGame.PLAYER2, or TileGame.NO_PLAYER for a draw
+     */
+    public void setWinner(int winner) {
+        if (winner != TileGame.PLAYER1 && winner != TileGame.PLAYER2 && winner != TileGame.NO_PLAYER) {
+            throw new IllegalArgumentException("Unknown winner " + winner);
+        }
+        this.winner = winner;
+    }
+
+    /**
+     * @return a new empty board of the record's size
+     */
+    public TileGame createBoard() {
+        return new TileGame(rows, cols, pool);
+    }
+
+    /**
+     * Plays the record from the empty board, showing every position to
+     * the visitor before its move is made. The same board is played on
+     * throughout, so a visitor that keeps a position must copy it.
+     * @param visitor sees each position and the move played from it
+     * @return the final position
+     * @throws IllegalStateException if a move is illegal
+     */
+    public TileGame replay(PositionVisitor visitor) {
+        TileGame game = createBoard();
+        for (int ply = 0; ply < count; ply++) {
+            int move = moves[ply];
+            if (visitor != null) {
+                visitor.visit(this, ply, game, move);
+            }
+            if (!game.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move))) {
+                throw new IllegalStateException(String.format("Move %d %s is illegal in %s",
+                        ply, MoveGenerator.toMove(move), this));
+            }
+        }
+        return game;
+    }
+
+    /**
+     * @return the final position
+     * @throws IllegalStateException if a move is illegal
+     */
+    public TileGame replay() {
+        return replay(null);
+    }
+
+    /**
+     * Parses the text form of a record (see toString).
+     * @param line the text form
+     * @return the record
+     * @throws IllegalArgumentException if the line isn't a record
+     */
+    public static GameRecord parse(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens.length < 2) {
+            throw new IllegalArgumentException("Not a game record: " + line);
+        }
+        try {
+            String[] board = tokens[0].split("x");
+            if (board.length != 3) {
+                throw new IllegalArgumentException("Not a board size: " + tokens[0]);
+            }
+            int[] moves = new int[Integer.max(tokens.length - 2, 8)];
+            for (int i = 2; i < tokens.length; i++) {
+                String[] parts = tokens[i].split(",");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Not a move: " + tokens[i]);
+                }
+                moves[i - 2] = MoveGenerator.encode(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2]));
+            }
+            GameRecord record = new GameRecord(Integer.parseInt(board[0]), Integer.parseInt(board[1]),
+                    Integer.parseInt(board[2]), moves, tokens.length - 2);
+            record.setWinner(parseWinner(tokens[1]));
+            return record;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a game record: " + line, e);
+        }
+    }
+
+    private static int parseWinner(String token) {
+        switch (token) {
+            case "P1": return TileGame.PLAYER1;
+            case "P2": return TileGame.PLAYER2;
+            case "draw": return TileGame.NO_PLAYER;
+            default: throw new IllegalArgumentException("Unknown winner " + token);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(16 + 8 * count);
+        result.append(rows).append('x').append(cols).append('x').append(pool);
+        result.append(winner == TileGame.PLAYER1 ? " P1" : winner == TileGame.PLAYER2 ? " P2" : " draw");
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            result.append(' ').append(MoveGenerator.row(move))
+                    .append(',').append(MoveGenerator.col(move))
+                    .append(',').append(MoveGenerator.cost(move));
+        }
+        return result.toString();
+    }
+}
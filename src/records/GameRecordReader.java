@@ -0,0 +1,198 @@
+package records;
+
+import players.MoveGenerator;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class GameRecordReader implements Closeable {
+
+    /**
+     * Reads the records written by GameRecordWriter one at a time, so
+     * files of any size can be processed in constant memory. The format
+     * is detected from the first bytes of the file.
+     *
+     * Binary records are decoded straight out of a 64 KiB buffer, so
+     * reading costs little more than the disk does. Blank lines and
+     * lines starting with # are skipped in text files.
+     *
+     * Readers aren't thread safe.
+     */
+
+    private final InputStream in;
+    private final int format;
+
+    // Binary input is decoded from here
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+
+    // Text input is read from here
+    private final BufferedReader lines;
+
+    private long count;
+
+    /**
+     * Opens a record file.
+     * @param file the file to read
+     * @throws IOException if the file can't be read or is a binary
+     * file of an unknown version
+     */
+    public GameRecordReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * Reads records from a stream, which is closed with the reader.
+     * @param in the stream to read
+     * @throws IOException if the stream can't be read or is a binary
+     * file of an unknown version
+     */
+    public GameRecordReader(InputStream in) throws IOException {
+        this.in = in;
+        while (limit < 8 && fill()) {
+            // Read enough to see the header
+        }
+        if (limit >= 8 && readInt() == GameRecordWriter.MAGIC) {
+            int version = readInt();
+            if (version != GameRecordWriter.VERSION) {
+                throw new IOException("Unknown game record version " + version);
+            }
+            format = GameRecordWriter.FORMAT_BINARY;
+            lines = null;
+        } else {
+            format = GameRecordWriter.FORMAT_TEXT;
+            InputStream start = new ByteArrayInputStream(buffer, 0, limit);
+            lines = new BufferedReader(new InputStreamReader(new SequenceInputStream(start, in),
+                    StandardCharsets.UTF_8), 1 << 16);
+        }
+    }
+
+    /**
+     * @return GameRecordWriter.FORMAT_BINARY or GameRecordWriter.FORMAT_TEXT
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the number of records read so far
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Reads the next record.
+     * @return the record, or null at the end of the file
+     * @throws IOException if the file can't be read, or ends or is
+     * malformed part way through a record
+     */
+    public GameRecord next() throws IOException {
+        GameRecord record = format == GameRecordWriter.FORMAT_BINARY ? nextBinary() : nextText();
+        if (record != null) {
+            count++;
+        }
+        return record;
+    }
+
+    private GameRecord nextText() throws IOException {
+        String line;
+        do {
+            line = lines.readLine();
+            if (line == null) {
+                return null;
+            }
+            line = line.trim();
+        } while (line.isEmpty() || line.startsWith("#"));
+
+        try {
+            return GameRecord.parse(line);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Record %d: %s", count + 1, e.getMessage()), e);
+        }
+    }
+
+    private GameRecord nextBinary() throws IOException {
+        if (position == limit && !fill()) {
+            return null;
+        }
+        try {
+            int rows = readByte();
+            int cols = readByte();
+            int pool = readVarint();
+            int winner = readByte() - 1;
+            int moves = readVarint();
+
+            GameRecord record = new GameRecord(rows, cols, pool);
+            record.setWinner(winner);
+            for (int i = 0; i < moves; i++) {
+                int cell = readVarint();
+                int cost = readVarint();
+                record.add(MoveGenerator.encode(cell / cols, cell % cols, cost));
+            }
+            return record;
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Record %d: %s", count + 1, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (lines != null) {
+            lines.close();
+        } else {
+            in.close();
+        }
+    }
+
+    /*
+    Moves any unread bytes to the front of the buffer and reads more
+    after them. Returns false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit && !fill()) {
+            throw new EOFException(String.format("Record %d is cut short", count + 1));
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private int readVarint() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException(String.format("Record %d has a malformed number", count + 1));
+    }
+}
@@ -0,0 +1,131 @@
+package records;
+
+import players.MoveGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class GameRecordWriter implements Closeable {
+
+    /**
+     * Writes game records to a file, one after another, in either the
+     * binary or the text format. GameRecordReader reads both.
+     *
+     * A binary file is a header followed by the records. Each record is
+     * the rows and columns as bytes, the pool as a varint, the winner
+     * plus 1 as a byte and the number of moves as a varint, followed by
+     * each move's cell (row * cols + col) and cost as varints. Varints
+     * take 7 bits per byte, low bits first, so a move on a small board
+     * takes 2 bytes.
+     *
+     * The text format is one record per line, as in GameRecord.toString.
+     *
+     * Writers aren't thread safe.
+     */
+
+    static final int MAGIC = 0x54474752; // "TGGR"
+    static final int VERSION = 1;
+
+    public static final int FORMAT_BINARY = 0;
+    public static final int FORMAT_TEXT = 1;
+
+    private final OutputStream out;
+    private final int format;
+    private long count;
+
+    /**
+     * Opens a file for writing.
+     * @param file the file to write
+     * @param format FORMAT_BINARY or FORMAT_TEXT
+     * @param append true to add to the end of an existing file of the
+     *               same format, false to replace it
+     * @throws IOException if the file can't be opened
+     */
+    public GameRecordWriter(File file, int format, boolean append) throws IOException {
+        if (format != FORMAT_BINARY && format != FORMAT_TEXT) {
+            throw new IllegalArgumentException("Unknown record format " + format);
+        }
+        boolean header = format == FORMAT_BINARY && (!append || file.length() == 0);
+        this.out = new BufferedOutputStream(new FileOutputStream(file, append), 1 << 16);
+        this.format = format;
+        if (header) {
+            writeInt(MAGIC);
+            writeInt(VERSION);
+        }
+    }
+
+    /**
+     * @param file a record file
+     * @return FORMAT_TEXT for files ending in .txt, FORMAT_BINARY otherwise
+     */
+    public static int formatOf(File file) {
+        return file.getName().endsWith(".txt") ? FORMAT_TEXT : FORMAT_BINARY;
+    }
+
+    /**
+     * @return the number of records written
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes one record.
+     * @param record the record to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(GameRecord record) throws IOException {
+        if (format == FORMAT_TEXT) {
+            out.write(record.toString().getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        } else {
+            if (record.rows > 255 || record.cols > 255) {
+                throw new IllegalArgumentException("Binary records hold at most 255 rows and columns");
+            }
+            out.write(record.rows);
+            out.write(record.cols);
+            writeVarint(record.pool);
+            out.write(record.getWinner() + 1);
+            writeVarint(record.size());
+            for (int i = 0; i < record.size(); i++) {
+                int move = record.getMove(i);
+                writeVarint(MoveGenerator.row(move) * record.cols + MoveGenerator.col(move));
+                writeVarint(MoveGenerator.cost(move));
+            }
+        }
+        count++;
+    }
+
+    /**
+     * Writes any buffered records to the file.
+     * @throws IOException if the file can't be written
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,14 @@
+package records;
+
+import tilegame.TileGame;
+
+public interface PositionVisitor {
+    /**
+     * Sees one position of a replayed game.
+     * @param record the game being replayed
+     * @param ply the number of moves played so far
+     * @param position the position, which is changed once this returns
+     * @param move the move played from the position, encoded as by MoveGenerator
+     */
+    void visit(GameRecord record, int ply, TileGame position, int move);
+}
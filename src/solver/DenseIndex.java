@@ -0,0 +1,265 @@
+package solver;
+
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+
+public class DenseIndex implements StateIndex {
+
+    /**
+     * A dense numbering of rows x cols x pool positions, with a
+     * bijective rank and unrank.
+     *
+     * A tile's value never exceeds what was paid for it, since flips
+     * only lower it, and a locked tile cost at least 1. So every
+     * reachable position has
+     *     sum over claimed tiles of max(value, 1) <= 2 * pool - p1 - p2
+     * where p1 and p2 are the pools left. This index numbers exactly
+     * the positions that meet this bound, with either player to move.
+     * That is far fewer than MixedRadixIndex's, so stores built on it
+     * are small enough to fill densely.
+     *
+     * Ranks are grouped by (turn, p1, p2). Within a group, tiles are
+     * ranked like digits, where each digit's place value depends on
+     * the budget left for the tiles after it. count[k][b] is the
+     * number of ways to fill k tiles with a total cost of at most b.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+
+    private final int cells;
+    private final int radix;
+    private final int maxBudget;
+
+    // before[(k * (maxBudget + 1) + b) * radix + j]: ranks taken by the
+    // raw values with digit < j, for a tile with k tiles left (itself
+    // included) and budget b
+    private final long[] before;
+
+    // offsets[(turn * (pool + 1) + p1) * (pool + 1) + p2]: first rank of each group
+    private final long[] offsets;
+    private final long size;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @throws IllegalArgumentException if there are more than 2^63 ranks
+     */
+    public DenseIndex(int rows, int cols, int pool) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.cells = rows * cols;
+        this.radix = 2 * pool + 3;
+        this.maxBudget = 2 * pool;
+
+        long[][] count;
+        try {
+            count = countFillings(cells, pool);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format(
+                    "A %dx%dx%d board has more than 2^63 ranks", rows, cols, pool));
+        }
+
+        before = new long[(cells + 1) * (maxBudget + 1) * radix];
+        for (int k = 1; k <= cells; k++) {
+            for (int b = 0; b <= maxBudget; b++) {
+                int base = (k * (maxBudget + 1) + b) * radix;
+                long total = 0;
+                for (int j = 0; j < radix; j++) {
+                    before[base + j] = total;
+                    int cost = cost(j - pool - 1);
+                    if (cost <= b) {
+                        total += count[k - 1][b - cost];
+                    }
+                }
+            }
+        }
+
+        offsets = new long[2 * (pool + 1) * (pool + 1)];
+        long total = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            int p1 = (i / (pool + 1)) % (pool + 1);
+            int p2 = i % (pool + 1);
+            offsets[i] = total;
+            total += count[cells][maxBudget - p1 - p2];
+            if (total < 0) {
+                throw new IllegalArgumentException(String.format(
+                        "A %dx%dx%d board has more than 2^63 ranks", rows, cols, pool));
+            }
+        }
+        this.size = total;
+    }
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @return true if the board's positions can be ranked in a long
+     */
+    public static boolean fits(int rows, int cols, int pool) {
+        try {
+            new DenseIndex(rows, cols, pool);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /*
+    count[k][b] is the number of ways to fill k tiles, each open or
+    holding any raw value, with a total cost of at most b
+     */
+    private static long[][] countFillings(int cells, int pool) {
+        int maxBudget = 2 * pool;
+        long[][] count = new long[cells + 1][maxBudget + 1];
+        for (int b = 0; b <= maxBudget; b++) {
+            count[0][b] = 1;
+        }
+        for (int k = 1; k <= cells; k++) {
+            for (int b = 0; b <= maxBudget; b++) {
+                long total = 0;
+                for (int raw = -pool - 1; raw <= pool + 1; raw++) {
+                    int cost = cost(raw);
+                    if (cost <= b) {
+                        total = Math.addExact(total, count[k - 1][b - cost]);
+                    }
+                }
+                count[k][b] = total;
+            }
+        }
+        return count;
+    }
+
+    /*
+    The least pool a tile with this raw value could have cost
+     */
+    private static int cost(int raw) {
+        if (raw == 0) {
+            return 0;
+        }
+        return Integer.max(Math.abs(raw) - 1, 1);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the position breaks the cost bound,
+     * and so can't be reached
+     */
+    @Override
+    public long rank(CompactBoard board) {
+        int p1 = board.getPool(TileGame.PLAYER1);
+        int p2 = board.getPool(TileGame.PLAYER2);
+        long rank = offsets[(board.getTurn() * (pool + 1) + p1) * (pool + 1) + p2];
+        int budget = maxBudget - p1 - p2;
+        for (int cell = 0; cell < cells; cell++) {
+            int raw = board.getRaw(cell);
+            rank += before[((cells - cell) * (maxBudget + 1) + budget) * radix + raw + pool + 1];
+            budget -= cost(raw);
+            if (budget < 0) {
+                throw new IllegalArgumentException("The position costs more than the pools spent");
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @param game a position of the indexed board size
+     * @return the rank of the position, 0 <= result < size()
+     * @throws IllegalArgumentException if the position can't be reached
+     */
+    public long rank(TileGame game) {
+        int p1 = game.getPlayerPool(TileGame.PLAYER1);
+        int p2 = game.getPlayerPool(TileGame.PLAYER2);
+        long rank = offsets[(game.turn * (pool + 1) + p1) * (pool + 1) + p2];
+        int budget = maxBudget - p1 - p2;
+        int k = cells;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int raw = game.getRaw(r, c);
+                rank += before[(k-- * (maxBudget + 1) + budget) * radix + raw + pool + 1];
+                budget -= cost(raw);
+                if (budget < 0) {
+                    throw new IllegalArgumentException("The position costs more than the pools spent");
+                }
+            }
+        }
+        return rank;
+    }
+
+    @Override
+    public CompactBoard unrank(long rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IllegalArgumentException("rank out of range: " + rank);
+        }
+
+        // Find the (turn, p1, p2) group
+        int lo = 0;
+        int hi = offsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= rank) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        rank -= offsets[lo];
+        int turn = lo / ((pool + 1) * (pool + 1));
+        int p1 = (lo / (pool + 1)) % (pool + 1);
+        int p2 = lo % (pool + 1);
+
+        CompactBoard board = new CompactBoard(rows, cols, 0);
+        board.setPool(TileGame.PLAYER1, p1);
+        board.setPool(TileGame.PLAYER2, p2);
+        board.setTurn(turn);
+
+        // Each tile's digit is the last one whose range starts at or below the rank
+        int budget = maxBudget - p1 - p2;
+        for (int cell = 0; cell < cells; cell++) {
+            int base = ((cells - cell) * (maxBudget + 1) + budget) * radix;
+            lo = 0;
+            hi = radix - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (before[base + mid] <= rank) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            rank -= before[base + lo];
+            int raw = lo - pool - 1;
+            board.setRaw(cell, raw);
+            budget -= cost(raw);
+        }
+        return board;
+    }
+
+    /**
+     * Prints how many ranks a board needs with this index and with
+     * a MixedRadixIndex.
+     * Usage: DenseIndex rows cols pool
+     */
+    public static void main(String[] args) {
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        int pool = Integer.parseInt(args[2]);
+        if (!fits(rows, cols, pool)) {
+            System.out.printf("%dx%dx%d has more than 2^63 ranks%n", rows, cols, pool);
+            return;
+        }
+        System.out.printf("%dx%dx%d: %d dense ranks", rows, cols, pool, new DenseIndex(rows, cols, pool).size());
+        try {
+            System.out.printf(", %d mixed radix ranks%n", new MixedRadixIndex(rows, cols, pool).size());
+        } catch (IllegalArgumentException e) {
+            System.out.println(", too many for a mixed radix index");
+        }
+    }
+}
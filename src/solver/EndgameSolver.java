@@ -0,0 +1,234 @@
+package solver;
+
+import players.MoveGenerator;
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+
+public class EndgameSolver {
+
+    /**
+     * Computes exact game values of positions with few open tiles, for
+     * searches that hand the end of the game over instead of estimating
+     * it. Values are the same as PerfectSolver's, the final score under
+     * perfect play, but positions aren't stored in a database, so this
+     * works on any board size.
+     *
+     * The search is a fail-soft alpha-beta over int scores, played and
+     * undone in place on a CompactBoard. Only moves that
+     * MoveGenerator.generateNonDominated keeps are searched, since the
+     * others spend more pool for the same effect. A fixed-size table
+     * remembers a lower and an upper bound and the best move of each
+     * position, so transpositions and repeated solves are cheap, and
+     * the best move is searched first.
+     *
+     * Solvers aren't thread safe. Use one per search thread.
+     */
+
+    // Bounds beyond any score, which only fit boards of up to 2^15 cells
+    private static final int UNBOUNDED = Short.MAX_VALUE;
+
+    private final long[] keys;
+    // Per entry, lower bound << 48 | upper bound << 32 | best move
+    private final long[] entries;
+    private final int mask;
+
+    private CompactBoard board;
+    private int[][] moves = new int[0][];
+
+    private long nodes;
+
+    /**
+     * @param capacity the number of table entries, rounded up to a
+     *                 power of 2, at least 1. Each entry takes 16 bytes.
+     */
+    public EndgameSolver(int capacity) {
+        if (capacity < 1 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^28");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        keys = new long[size];
+        entries = new long[size];
+        mask = size - 1;
+        clear();
+    }
+
+    /**
+     * @return the number of positions searched since the solver was created
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Removes every entry from the table.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            keys[i] = 0;
+            entries[i] = pack(-UNBOUNDED, UNBOUNDED, 0);
+        }
+    }
+
+    /**
+     * @param game the position to solve
+     * @return the final score under perfect play
+     */
+    public int solve(TileGame game) {
+        start(game.toCompactBoard());
+        return search(0, -board.cells, board.cells);
+    }
+
+    /**
+     * Plays the game out with perfect moves by both players. The end
+     * position has the game value as its score.
+     * @param game the position to start from, which isn't changed
+     * @return the position where the game becomes forfeitable
+     */
+    public TileGame playOut(TileGame game) {
+        start(game.toCompactBoard());
+        int value = search(0, -board.cells, board.cells);
+
+        for (int ply = 0; !board.isGameForfeitable(); ply++) {
+            int[] list = moves[ply];
+            int count = generate(list, move(entries[slot(board.getHash())], board.getHash()));
+            boolean found = false;
+            for (int i = 0; i < count && !found; i++) {
+                play(list[i]);
+                // Only a move that keeps the game value fits inside this window
+                found = search(ply + 1, value - 1, value + 1) == value;
+                if (!found) {
+                    board.undo();
+                }
+            }
+            if (!found) {
+                throw new IllegalStateException("No move reaches the game value " + value);
+            }
+        }
+        return board.toTileGame();
+    }
+
+    private void start(CompactBoard board) {
+        this.board = board;
+        int plies = board.countOpenTiles() + 1;
+        int capacity = MoveGenerator.capacity(board.rows, board.cols,
+                Integer.max(board.getPool(TileGame.PLAYER1), board.getPool(TileGame.PLAYER2)));
+        if (moves.length < plies || moves[0].length < capacity) {
+            moves = new int[plies][capacity];
+        }
+    }
+
+    /*
+    Fail-soft alpha-beta. Player 1 maximizes the final score and Player
+    2 minimizes it. The board is restored before returning.
+     */
+    private int search(int ply, int alpha, int beta) {
+        nodes++;
+        if (board.isGameForfeitable()) {
+            return board.getScore();
+        }
+
+        long key = board.getHash();
+        int slot = slot(key);
+        int best = 0;
+        if (keys[slot] == key) {
+            long entry = entries[slot];
+            int lower = lower(entry);
+            int upper = upper(entry);
+            if (lower >= beta || lower == upper) {
+                return lower;
+            } else if (upper <= alpha) {
+                return upper;
+            }
+            alpha = Integer.max(alpha, lower);
+            beta = Integer.min(beta, upper);
+            best = move(entry, key);
+        }
+
+        boolean maximize = board.getTurn() == TileGame.PLAYER1;
+        int[] list = moves[ply];
+        int count = generate(list, best);
+
+        int value = maximize ? -UNBOUNDED : UNBOUNDED;
+        int a = alpha;
+        int b = beta;
+        for (int i = 0; i < count && a < b; i++) {
+            play(list[i]);
+            int result = search(ply + 1, a, b);
+            board.undo();
+
+            if (maximize ? result > value : result < value) {
+                value = result;
+                best = list[i];
+            }
+            if (maximize) {
+                a = Integer.max(a, value);
+            } else {
+                b = Integer.min(b, value);
+            }
+        }
+
+        // Nothing is known past the edges of the window
+        long entry = keys[slot] == key ? entries[slot] : pack(-UNBOUNDED, UNBOUNDED, 0);
+        int lower = lower(entry);
+        int upper = upper(entry);
+        if (value <= alpha) {
+            upper = value;
+        } else if (value >= beta) {
+            lower = value;
+        } else {
+            lower = value;
+            upper = value;
+        }
+        keys[slot] = key;
+        entries[slot] = pack(lower, upper, best);
+        return value;
+    }
+
+    /*
+    Fills the list with the board's moves, with the given move first
+    if it is one of them. Returns the number of moves.
+     */
+    private int generate(int[] list, int first) {
+        int count = MoveGenerator.generateNonDominated(board, MoveGenerator.ALL, list);
+        if (first != 0) {
+            for (int i = 1; i < count; i++) {
+                if (list[i] == first) {
+                    System.arraycopy(list, 0, list, 1, i);
+                    list[0] = first;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void play(int move) {
+        board.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static long pack(int lower, int upper, int move) {
+        return ((long) lower << 48) | ((long) (upper & 0xFFFF) << 32) | (move & 0xFFFFFFFFL);
+    }
+
+    private static int lower(long entry) {
+        return (int) (entry >> 48);
+    }
+
+    private static int upper(long entry) {
+        return (short) (entry >>> 32);
+    }
+
+    /*
+    The entry's best move, or 0 if the entry belongs to another position
+     */
+    private int move(long entry, long key) {
+        return keys[slot(key)] == key ? (int) entry : 0;
+    }
+}
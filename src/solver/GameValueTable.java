@@ -0,0 +1,228 @@
+package solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+public class GameValueTable {
+
+    /**
+     * A bounded hash table from position keys (see PositionCodec) to
+     * game values. Memory is allocated once, when the table is created:
+     * 9 bytes per slot. Once the table is full, new values are dropped.
+     *
+     * Tables are saved as a header followed by only the occupied
+     * (key, value) pairs, and rebuilt as a hash table when loaded,
+     * so a lookup is O(1) either way. The header records the board
+     * and whether keys are canonical (see PositionCodec.encodeCanonical),
+     * since the two kinds of keys mean different positions.
+     */
+
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x54474456; // "TGDV"
+    private static final int VERSION = 2;
+
+    private static final long EMPTY = -1;
+
+    // Probing gives up once the table is this full
+    private static final float MAX_LOAD = 0.9f;
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+    // True if keys are canonical, one per set of symmetric positions
+    public final boolean symmetric;
+
+    private final long[] keys;
+    private final byte[] values;
+    private final int mask;
+    private final int limit;
+    private int size;
+    private long dropped;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @param capacity the number of slots, rounded up to a power of 2
+     */
+    public GameValueTable(int rows, int cols, int pool, int capacity) {
+        this(rows, cols, pool, capacity, false);
+    }
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @param capacity the number of slots, rounded up to a power of 2
+     * @param symmetric true if the keys will be canonical
+     */
+    public GameValueTable(int rows, int cols, int pool, int capacity, boolean symmetric) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.symmetric = symmetric;
+
+        keys = new long[slots];
+        values = new byte[slots];
+        mask = slots - 1;
+        limit = (int) (slots * MAX_LOAD);
+
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @param key a position key, >= 0
+     * @return the stored value, or UNKNOWN
+     */
+    public int get(long key) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Stores a value. Values must fit in a byte.
+     * @param key a position key, >= 0
+     * @param value the game value
+     * @return false if the table was full and the value was dropped
+     */
+    public boolean put(long key, int value) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = (byte) value;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= limit) {
+            dropped++;
+            return false;
+        }
+        keys[slot] = key;
+        values[slot] = (byte) value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return the number of stored values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return the number of values that didn't fit
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Calls the visitor with every stored (key, value) pair.
+     * @param visitor receives the entries, in no particular order
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public interface EntryVisitor {
+        void visit(long key, int value);
+    }
+
+    /**
+     * Writes the table to a file. The file is written next to the
+     * destination first and then moved over it, so an interrupted
+     * save never destroys the previous file.
+     * @param file where to write the table
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(pool);
+            out.writeBoolean(symmetric);
+            out.writeInt(size);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    out.writeLong(keys[slot]);
+                    out.writeByte(values[slot]);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a table written by save.
+     * @param file the file to read
+     * @param capacity the number of slots of the new table; it is
+     *                 grown if the file holds more entries than fit
+     * @return the loaded table
+     * @throws IOException if the file can't be read or isn't a table
+     */
+    public static GameValueTable load(File file, int capacity) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a game value table");
+            }
+            int rows = in.readInt();
+            int cols = in.readInt();
+            int pool = in.readInt();
+            boolean symmetric = in.readBoolean();
+            int count = in.readInt();
+
+            int needed = (int) Math.min(1L << 30, (long) (count / MAX_LOAD) + 1);
+            GameValueTable table = new GameValueTable(rows, cols, pool, Integer.max(capacity, needed), symmetric);
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                table.put(key, in.readByte());
+            }
+            return table;
+        }
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,80 @@
+package solver;
+
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+
+public class MixedRadixIndex implements StateIndex {
+
+    /**
+     * The simplest StateIndex: every tile is a digit with one of
+     * 2 * pool + 3 raw values, followed by both pools and the turn.
+     * Most ranks belong to positions that can't be reached, so the
+     * index is sparse. Stores built on it rely on sparse files to
+     * only take up disk space for the ranks that are written.
+     * DenseIndex needs far fewer ranks.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+
+    private final int cells;
+    private final long cellRadix;
+    private final long poolRadix;
+    private final long size;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     */
+    public MixedRadixIndex(int rows, int cols, int pool) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.cells = rows * cols;
+        this.cellRadix = 2L * pool + 3;
+        this.poolRadix = pool + 1L;
+
+        long total = 2 * poolRadix * poolRadix;
+        for (int cell = 0; cell < cells; cell++) {
+            if (total > Long.MAX_VALUE / cellRadix) {
+                throw new IllegalArgumentException(String.format(
+                        "A %dx%dx%d board has more than 2^63 ranks", rows, cols, pool));
+            }
+            total *= cellRadix;
+        }
+        this.size = total;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long rank(CompactBoard board) {
+        long rank = board.getTurn();
+        rank = rank * poolRadix + board.getPool(TileGame.PLAYER1);
+        rank = rank * poolRadix + board.getPool(TileGame.PLAYER2);
+        for (int cell = 0; cell < cells; cell++) {
+            rank = rank * cellRadix + board.getRaw(cell) + pool + 1;
+        }
+        return rank;
+    }
+
+    @Override
+    public CompactBoard unrank(long rank) {
+        CompactBoard board = new CompactBoard(rows, cols, 0);
+        for (int cell = cells - 1; cell >= 0; cell--) {
+            board.setRaw(cell, (int) (rank % cellRadix) - pool - 1);
+            rank /= cellRadix;
+        }
+        board.setPool(TileGame.PLAYER2, (int) (rank % poolRadix));
+        rank /= poolRadix;
+        board.setPool(TileGame.PLAYER1, (int) (rank % poolRadix));
+        rank /= poolRadix;
+        board.setTurn((int) rank);
+        return board;
+    }
+}
@@ -0,0 +1,296 @@
+package solver;
+
+import players.Move;
+import tilegame.CompactBoard;
+import tilegame.Symmetry;
+import tilegame.TileGame;
+
+import java.io.File;
+import java.io.IOException;
+
+public class PerfectSolver {
+
+    /**
+     * Computes exact game values by memoized minimax over every
+     * reachable position, and stores them in a GameValueTable that can
+     * be written to disk. Once a board is solved, perfect play is a
+     * table lookup per candidate move.
+     *
+     * The game value of a position is the final score (see
+     * TileGame.getScore) when both players play perfectly, and the game
+     * stops as soon as it is forfeitable, as in Main.
+     * Player 1 maximizes the value and Player 2 minimizes it.
+     *
+     * Memory is bounded by the table's capacity. When the table is
+     * full, values are recomputed instead of stored, which is slower
+     * but still exact. With a checkpoint file, the table is saved
+     * periodically, and a new solver picks up where an interrupted one
+     * left off, since every stored value is final.
+     *
+     * With a ValueStore, values are kept in the store's memory-mapped
+     * file instead of the table. Each value is written as soon as it is
+     * solved, so other processes can read the store while it fills.
+     * Values are then clamped to the store's range.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+
+    private final PositionCodec codec;
+    private GameValueTable table;
+
+    // When set, positions are keyed by their canonical representative
+    private Symmetry symmetry = null;
+
+    // When set, values are kept here instead of in the table
+    private ValueStore store = null;
+
+    private File checkpoint = null;
+    private long checkpointInterval;
+    private long sinceCheckpoint;
+
+    private long nodes;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @param capacity the number of positions the table can hold
+     */
+    public PerfectSolver(int rows, int cols, int pool, int capacity) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.codec = new PositionCodec(rows, cols, pool);
+        this.table = new GameValueTable(rows, cols, pool, capacity);
+    }
+
+    /**
+     * Saves the table to the given file every time this many new
+     * values have been solved. If the file already exists, the
+     * values in it are loaded first, resuming an earlier run. Call
+     * setSymmetry first, since the checkpoint must match it.
+     * @param file the checkpoint file
+     * @param interval the number of new values between saves
+     * @throws IOException if an existing checkpoint can't be read
+     */
+    public void setCheckpoint(File file, long interval) throws IOException {
+        if (file.exists()) {
+            GameValueTable saved = GameValueTable.load(file, table.capacity());
+            if (saved.rows != rows || saved.cols != cols || saved.pool != pool) {
+                throw new IOException(String.format("%s holds a %dx%dx%d board", file, saved.rows, saved.cols, saved.pool));
+            }
+            if (saved.symmetric != (symmetry != null)) {
+                throw new IOException(String.format("%s was written %s symmetry", file, saved.symmetric ? "with" : "without"));
+            }
+            table = saved;
+        }
+        this.checkpoint = file;
+        this.checkpointInterval = interval;
+        this.sinceCheckpoint = 0;
+    }
+
+    /**
+     * Stores one value per set of positions that are rotations or
+     * reflections of each other, which shrinks the table up to 8 times.
+     * Tables written with and without symmetry are not interchangeable,
+     * so this can only change while the table is empty.
+     * @param enabled true to key positions by their canonical representative
+     * @throws IllegalStateException if the table already holds values
+     * of the other kind
+     */
+    public void setSymmetry(boolean enabled) {
+        if (table.symmetric != enabled) {
+            if (table.size() > 0) {
+                throw new IllegalStateException("The table already holds values keyed " + (table.symmetric ? "with" : "without") + " symmetry");
+            }
+            table = new GameValueTable(rows, cols, pool, table.capacity(), enabled);
+        }
+        this.symmetry = enabled ? new Symmetry(rows, cols) : null;
+    }
+
+    /**
+     * Keeps solved values in a ValueStore instead of the table.
+     * Values found this way are clamped to +/- store.getMaxValue(),
+     * so solve returns the clamped game value. Symmetry and
+     * checkpoints only apply to the table.
+     * @param store the store to use, or null to use the table
+     */
+    public void setValueStore(ValueStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the table holding every value solved so far
+     */
+    public GameValueTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return the number of positions searched, including repeats
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * @param game the position to solve
+     * @return the final score under perfect play
+     */
+    public int solve(TileGame game) {
+        return solve(game.toCompactBoard());
+    }
+
+    /**
+     * @param board the position to solve. It is restored before returning.
+     * @return the final score under perfect play
+     */
+    public int solve(CompactBoard board) {
+        try {
+            return search(board);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write checkpoint " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Finds a perfect move, solving any positions that aren't known yet.
+     * @param game the current position
+     * @return the first move in row-major, lowest-cost order that
+     * reaches the game value, or null if the game is over
+     */
+    public Move bestMove(TileGame game) {
+        CompactBoard board = game.toCompactBoard();
+        if (board.isGameForfeitable()) {
+            return null;
+        }
+
+        int player = board.getTurn();
+        int target = solve(board);
+        for (int cost = 1; cost <= board.getPool(player); cost++) {
+            for (int cell = 0; cell < board.cells; cell++) {
+                if (board.play(cell, cost)) {
+                    int value = solve(board);
+                    board.undo();
+                    if (value == target) {
+                        return new Move(cell / cols, cell % cols, cost);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private int search(CompactBoard board) throws IOException {
+        nodes++;
+        if (board.isGameForfeitable()) {
+            return store != null ? store.clamp(board.getScore()) : board.getScore();
+        }
+
+        long key;
+        int known;
+        if (store != null) {
+            key = store.getIndex().rank(board);
+            known = store.get(key);
+        } else {
+            key = symmetry != null ? codec.encodeCanonical(board, symmetry) : codec.encode(board);
+            known = table.get(key);
+        }
+        if (known != GameValueTable.UNKNOWN) {
+            return known;
+        }
+
+        int player = board.getTurn();
+        boolean maximize = player == TileGame.PLAYER1;
+        int limit = board.getPool(player);
+        int best = maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int perfect = store != null ? store.clamp(board.cells) : board.cells;
+
+        moves:
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (board.getRaw(cell) != 0) {
+                continue;
+            }
+            for (int cost = 1; cost <= limit; cost++) {
+                board.play(cell, cost);
+                int value = search(board);
+                board.undo();
+
+                best = maximize ? Integer.max(best, value) : Integer.min(best, value);
+
+                // Nothing beats owning every tile
+                if (best == (maximize ? perfect : -perfect)) {
+                    break moves;
+                }
+            }
+        }
+
+        if (store != null) {
+            store.put(key, best);
+        } else if (table.put(key, best) && checkpoint != null && ++sinceCheckpoint >= checkpointInterval) {
+            table.save(checkpoint);
+            sinceCheckpoint = 0;
+        }
+        return best;
+    }
+
+    /**
+     * Solves a board and writes its database.
+     * Usage: PerfectSolver rows cols pool database [log2 capacity] [symmetric | mapped bits]
+     * A checkpoint is kept next to the database while solving, and
+     * an interrupted run resumes from it.
+     * With "mapped", the database is a ValueStore over a DenseIndex
+     * with 2, 4 or 8 bits per value, written as values are solved.
+     * An interrupted run resumes from the values already in it.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: PerfectSolver rows cols pool database [log2 capacity] [symmetric | mapped bits]");
+            return;
+        }
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        int pool = Integer.parseInt(args[2]);
+        File database = new File(args[3]);
+        int capacity = 1 << (args.length > 4 ? Integer.parseInt(args[4]) : 24);
+
+        if (args.length > 5 && args[5].equals("mapped")) {
+            int bits = args.length > 6 ? Integer.parseInt(args[6]) : 8;
+            StateIndex index = new DenseIndex(rows, cols, pool);
+            try (ValueStore store = database.exists()
+                    ? ValueStore.open(database, index, true) : ValueStore.create(database, index, bits)) {
+                PerfectSolver solver = new PerfectSolver(rows, cols, pool, 1);
+                solver.setValueStore(store);
+
+                long start = System.nanoTime();
+                int value = solver.solve(new TileGame(rows, cols, pool));
+                long millis = (System.nanoTime() - start) / 1000000;
+
+                System.out.printf("%dx%dx%d game value: %+d (clamped to +/-%d)%n", rows, cols, pool, value, store.getMaxValue());
+                System.out.printf("%s, %d nodes in %d ms%n", store, solver.getNodeCount(), millis);
+            }
+            return;
+        }
+
+        PerfectSolver solver = new PerfectSolver(rows, cols, pool, capacity);
+        solver.setSymmetry(args.length > 5 && args[5].equals("symmetric"));
+        File checkpoint = new File(database.getPath() + ".checkpoint");
+        solver.setCheckpoint(checkpoint, capacity / 16);
+        if (solver.getTable().size() > 0) {
+            System.out.printf("Resuming with %d known positions%n", solver.getTable().size());
+        }
+
+        long start = System.nanoTime();
+        int value = solver.solve(new TileGame(rows, cols, pool));
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        solver.getTable().save(database);
+        checkpoint.delete();
+
+        System.out.printf("%dx%dx%d game value: %+d%n", rows, cols, pool, value);
+        System.out.printf("%d positions stored, %d dropped, %d nodes in %d ms%n",
+                solver.getTable().size(), solver.getTable().getDropped(), solver.getNodeCount(), millis);
+    }
+}
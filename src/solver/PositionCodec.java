@@ -0,0 +1,139 @@
+package solver;
+
+import tilegame.CompactBoard;
+import tilegame.Symmetry;
+import tilegame.TileGame;
+
+public class PositionCodec {
+
+    /**
+     * Packs a whole position of a rows x cols x pool board into one
+     * long, without collisions. Each tile takes just enough bits for
+     * its raw value, followed by both pools and the turn. This works
+     * for small boards such as 3x3x15 or 2x2x60, whose positions fit
+     * in 63 bits, so keys are never negative.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+
+    private final int cellBits;
+    private final int poolBits;
+    private final int cells;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     */
+    public PositionCodec(int rows, int cols, int pool) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.cells = rows * cols;
+
+        // Raw values range from -(pool + 1) to pool + 1
+        this.cellBits = bitsFor(2 * pool + 3);
+        this.poolBits = bitsFor(pool + 1);
+
+        if (cells * cellBits + 2 * poolBits + 1 > 63) {
+            throw new IllegalArgumentException(String.format(
+                    "A %dx%dx%d position does not fit in a 63-bit key", rows, cols, pool));
+        }
+    }
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     * @return true if positions of this board fit in a key
+     */
+    public static boolean fits(int rows, int cols, int pool) {
+        return rows * cols * bitsFor(2 * pool + 3) + 2 * bitsFor(pool + 1) + 1 <= 63;
+    }
+
+    /**
+     * @param board a position of this codec's board size
+     * @return the key of the position, >= 0
+     */
+    public long encode(CompactBoard board) {
+        long key = board.getTurn();
+        key = (key << poolBits) | board.getPool(TileGame.PLAYER1);
+        key = (key << poolBits) | board.getPool(TileGame.PLAYER2);
+        for (int cell = 0; cell < cells; cell++) {
+            key = (key << cellBits) | (board.getRaw(cell) + pool + 1);
+        }
+        return key;
+    }
+
+    /**
+     * @param board a position of this codec's board size
+     * @param symmetry the symmetries of the board
+     * @param i which symmetry to apply, 0 <= i < symmetry.size()
+     * @return the key of the transformed position
+     */
+    public long encode(CompactBoard board, Symmetry symmetry, int i) {
+        long key = board.getTurn();
+        key = (key << poolBits) | board.getPool(TileGame.PLAYER1);
+        key = (key << poolBits) | board.getPool(TileGame.PLAYER2);
+        for (int cell = 0; cell < cells; cell++) {
+            key = (key << cellBits) | (board.getRaw(symmetry.sourceCell(i, cell)) + pool + 1);
+        }
+        return key;
+    }
+
+    /**
+     * @param board a position of this codec's board size
+     * @param symmetry the symmetries of the board
+     * @return the smallest key among all rotations and reflections of
+     * the position, which is the same for all of them
+     */
+    public long encodeCanonical(CompactBoard board, Symmetry symmetry) {
+        long key = encode(board);
+        for (int i = 1; i < symmetry.size(); i++) {
+            key = Long.min(key, encode(board, symmetry, i));
+        }
+        return key;
+    }
+
+    /**
+     * @param game a position of this codec's board size
+     * @return the key of the position, >= 0
+     */
+    public long encode(TileGame game) {
+        long key = game.turn;
+        key = (key << poolBits) | game.getPlayerPool(TileGame.PLAYER1);
+        key = (key << poolBits) | game.getPlayerPool(TileGame.PLAYER2);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                key = (key << cellBits) | (game.getRaw(r, c) + pool + 1);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @param key a key returned by encode
+     * @return the position the key was made from
+     */
+    public CompactBoard decode(long key) {
+        CompactBoard board = new CompactBoard(rows, cols, 0);
+        long cellMask = (1L << cellBits) - 1;
+        long poolMask = (1L << poolBits) - 1;
+        for (int cell = cells - 1; cell >= 0; cell--) {
+            board.setRaw(cell, (int) (key & cellMask) - pool - 1);
+            key >>>= cellBits;
+        }
+        board.setPool(TileGame.PLAYER2, (int) (key & poolMask));
+        key >>>= poolBits;
+        board.setPool(TileGame.PLAYER1, (int) (key & poolMask));
+        key >>>= poolBits;
+        board.setTurn((int) key);
+        return board;
+    }
+
+    private static int bitsFor(int values) {
+        return 32 - Integer.numberOfLeadingZeros(values - 1);
+    }
+}
@@ -0,0 +1,373 @@
+package solver;
+
+import players.MoveGenerator;
+import tilegame.CompactBoard;
+import tilegame.TileGame;
+
+import java.util.HashSet;
+
+public class ProofNumberSearch {
+
+    /**
+     * Finds who wins a position under perfect play with depth-first
+     * proof-number search (df-pn), without computing the final score.
+     *
+     * Each question is a proposition, "Player 1 can finish with a score
+     * of at least target", that is proved or disproved. Proof numbers
+     * count the leaves that still need to be proved, and disproof
+     * numbers the leaves that still need to be disproved. The search
+     * always expands the most-proving leaf. In Player 1's positions one
+     * proved move is enough, and in Player 2's every move must be proved.
+     * This cuts off far more of the tree than a full-window search,
+     * because no effort goes into margins the question doesn't care
+     * about. The winner takes at most two proofs: target 1 for a win,
+     * then target 0 to tell a draw from a loss.
+     *
+     * Proof and disproof numbers are kept in a fixed-size table of
+     * 2-entry buckets. An entry that took less work to find is replaced
+     * first, and settled entries are kept over unsettled ones, so
+     * memory stays bounded on any board. Only moves that
+     * MoveGenerator.generateNonDominated keeps are searched, since the
+     * others can't change the game value.
+     */
+
+    // Proof and disproof numbers saturate here
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    // Nodes searched below the entry, 0 for an empty slot
+    private final long[] work;
+    private final int bucketMask;
+
+    private CompactBoard board;
+    private int target;
+    private long targetKey;
+
+    // Scratch space per ply, reused between searches
+    private int[][] moves = new int[0][];
+    private int[][] childProofs = new int[0][];
+    private int[][] childDisproofs = new int[0][];
+
+    // Proof and disproof numbers of the node that was last searched
+    private int resultProof;
+    private int resultDisproof;
+
+    private long nodes;
+    private long proofSize;
+
+    /**
+     * @param capacity the number of table entries, rounded up to a
+     *                 power of 2, at least 2. Each entry takes 24 bytes.
+     */
+    public ProofNumberSearch(int capacity) {
+        if (capacity < 2 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^28");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        keys = new long[size];
+        proofs = new int[size];
+        disproofs = new int[size];
+        work = new long[size];
+        bucketMask = size / 2 - 1;
+    }
+
+    /**
+     * @return the number of nodes searched since the searcher was created
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of distinct positions in the proofs of the
+     * latest call to solve or prove. A solve that finds a draw adds up
+     * the proof of target 0 and the disproof of target 1.
+     */
+    public long getProofSize() {
+        return proofSize;
+    }
+
+    /**
+     * Removes every entry from the table.
+     */
+    public void clear() {
+        for (int i = 0; i < work.length; i++) {
+            work[i] = 0;
+        }
+    }
+
+    /**
+     * Finds the winner under perfect play, where the game ends as soon
+     * as it is forfeitable (see PerfectSolver).
+     * @param game the position to solve
+     * @return TileGame.PLAYER1, TileGame.PLAYER2, or TileGame.NO_PLAYER for a draw
+     */
+    public int solve(TileGame game) {
+        long size;
+        int winner;
+        if (prove(game, 1)) {
+            winner = TileGame.PLAYER1;
+            size = proofSize;
+        } else {
+            size = proofSize;
+            winner = prove(game, 0) ? TileGame.NO_PLAYER : TileGame.PLAYER2;
+            size = winner == TileGame.NO_PLAYER ? size + proofSize : proofSize;
+        }
+        proofSize = size;
+        return winner;
+    }
+
+    /**
+     * Decides whether Player 1 can force a final score (see
+     * TileGame.getScore) of at least the target.
+     * @param game the position to search
+     * @param target the score to reach
+     * @return true if Player 1 can, false if Player 2 can prevent it
+     */
+    public boolean prove(TileGame game, int target) {
+        board = game.toCompactBoard();
+        this.target = target;
+        this.targetKey = mix(target);
+
+        int capacity = MoveGenerator.capacity(board.rows, board.cols,
+                Integer.max(board.getPool(TileGame.PLAYER1), board.getPool(TileGame.PLAYER2)));
+        int plies = board.countOpenTiles() + 1;
+        if (moves.length < plies || moves[0].length < capacity) {
+            moves = new int[plies][capacity];
+            childProofs = new int[plies][capacity];
+            childDisproofs = new int[plies][capacity];
+        }
+
+        boolean proved;
+        if (board.isGameForfeitable()) {
+            proved = board.getScore() >= target;
+        } else {
+            search(0, INFINITY, INFINITY);
+            proved = resultProof == 0;
+        }
+        proofSize = proofSize(0, proved, new HashSet<>());
+        return proved;
+    }
+
+    /*
+    Searches the board until its proof number reaches proofLimit or its
+    disproof number reaches disproofLimit, then stores both numbers in
+    the table and in resultProof/resultDisproof. The board isn't
+    forfeitable.
+     */
+    private void search(int ply, int proofLimit, int disproofLimit) {
+        nodes++;
+        long started = nodes;
+        long key = board.getHash() ^ targetKey;
+        boolean or = board.getTurn() == TileGame.PLAYER1;
+
+        int[] list = moves[ply];
+        int[] pn = childProofs[ply];
+        int[] dn = childDisproofs[ply];
+        int count = MoveGenerator.generateNonDominated(board, MoveGenerator.ALL, list);
+        for (int i = 0; i < count; i++) {
+            play(list[i]);
+            evaluate();
+            pn[i] = resultProof;
+            dn[i] = resultDisproof;
+            board.undo();
+        }
+
+        int proof;
+        int disproof;
+        while (true) {
+            // In OR nodes one proved child proves the node, and in AND
+            // nodes one disproved child disproves it
+            int best = -1;
+            int second = INFINITY;
+            int min = INFINITY;
+            int sum = 0;
+            for (int i = 0; i < count; i++) {
+                int selected = or ? pn[i] : dn[i];
+                int other = or ? dn[i] : pn[i];
+                if (best < 0 || selected < min) {
+                    second = best < 0 ? INFINITY : min;
+                    min = selected;
+                    best = i;
+                } else if (selected < second) {
+                    second = selected;
+                }
+                sum = Integer.min(INFINITY, sum + other);
+            }
+            proof = or ? min : sum;
+            disproof = or ? sum : min;
+            if (proof >= proofLimit || disproof >= disproofLimit) {
+                break;
+            }
+
+            int childProofLimit;
+            int childDisproofLimit;
+            if (or) {
+                childProofLimit = Integer.min(proofLimit, second + 1);
+                childDisproofLimit = disproofLimit >= INFINITY ? INFINITY : disproofLimit - disproof + dn[best];
+            } else {
+                childProofLimit = proofLimit >= INFINITY ? INFINITY : proofLimit - proof + pn[best];
+                childDisproofLimit = Integer.min(disproofLimit, second + 1);
+            }
+
+            play(list[best]);
+            search(ply + 1, childProofLimit, childDisproofLimit);
+            board.undo();
+            pn[best] = resultProof;
+            dn[best] = resultDisproof;
+        }
+
+        store(key, proof, disproof, nodes - started + 1);
+        resultProof = proof;
+        resultDisproof = disproof;
+    }
+
+    /*
+    Sets resultProof/resultDisproof to what is known about the board
+    without searching it
+     */
+    private void evaluate() {
+        if (board.isGameForfeitable()) {
+            boolean reached = board.getScore() >= target;
+            resultProof = reached ? 0 : INFINITY;
+            resultDisproof = reached ? INFINITY : 0;
+            return;
+        }
+        int slot = find(board.getHash() ^ targetKey);
+        if (slot >= 0) {
+            resultProof = proofs[slot];
+            resultDisproof = disproofs[slot];
+        } else {
+            resultProof = 1;
+            resultDisproof = 1;
+        }
+    }
+
+    /*
+    Counts the distinct positions of the proof (or disproof) tree of
+    the board. A proof needs one proved move where Player 1 moves and
+    every move where Player 2 does, and a disproof the other way around.
+    Positions whose entries were replaced are searched again.
+     */
+    private long proofSize(int ply, boolean proof, HashSet<Long> seen) {
+        if (!seen.add(board.getHash())) {
+            return 0;
+        }
+        if (board.isGameForfeitable()) {
+            return 1;
+        }
+
+        boolean any = (board.getTurn() == TileGame.PLAYER1) == proof;
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateNonDominated(board, MoveGenerator.ALL, list);
+
+        if (any) {
+            // Follow a move already known to settle the node, if there is one
+            for (int i = 0; i < count; i++) {
+                play(list[i]);
+                evaluate();
+                boolean settled = proof ? resultProof == 0 : resultDisproof == 0;
+                long size = settled ? proofSize(ply + 1, proof, seen) : 0;
+                board.undo();
+                if (settled) {
+                    return 1 + size;
+                }
+            }
+        }
+
+        long size = 1;
+        for (int i = 0; i < count; i++) {
+            play(list[i]);
+            evaluate();
+            if (resultProof != 0 && resultDisproof != 0) {
+                search(ply + 1, INFINITY, INFINITY);
+            }
+            boolean settled = proof ? resultProof == 0 : resultDisproof == 0;
+            if (settled) {
+                size += proofSize(ply + 1, proof, seen);
+            }
+            board.undo();
+            if (any && settled) {
+                return size;
+            }
+        }
+        return size;
+    }
+
+    private void play(int move) {
+        board.play(MoveGenerator.row(move), MoveGenerator.col(move), MoveGenerator.cost(move));
+    }
+
+    private int find(long key) {
+        int base = ((int) key & bucketMask) << 1;
+        for (int slot = base; slot < base + 2; slot++) {
+            if (work[slot] != 0 && keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /*
+    Stores an entry, replacing the entry that took less work to find.
+    Settled entries count as infinite work.
+     */
+    private void store(long key, int proof, int disproof, long amount) {
+        int base = ((int) key & bucketMask) << 1;
+        int slot = -1;
+        for (int s = base; s < base + 2; s++) {
+            if (work[s] != 0 && keys[s] == key) {
+                slot = s;
+                break;
+            }
+        }
+        if (slot < 0) {
+            slot = work[base] <= work[base + 1] ? base : base + 1;
+        }
+        keys[slot] = key;
+        proofs[slot] = proof;
+        disproofs[slot] = disproof;
+        work[slot] = proof == 0 || disproof == 0 ? Long.MAX_VALUE : Long.max(1, amount);
+    }
+
+    /*
+    SplitMix64 finalizer, so every target gets its own table entries
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Finds the winner of an empty board.
+     * Usage: ProofNumberSearch rows cols pool [log2 capacity]
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: ProofNumberSearch rows cols pool [log2 capacity]");
+            return;
+        }
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        int pool = Integer.parseInt(args[2]);
+        int capacity = 1 << (args.length > 3 ? Integer.parseInt(args[3]) : 22);
+
+        ProofNumberSearch search = new ProofNumberSearch(capacity);
+        long start = System.nanoTime();
+        int winner = search.solve(new TileGame(rows, cols, pool));
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        String outcome = winner == TileGame.PLAYER1 ? "Player 1 wins"
+                : winner == TileGame.PLAYER2 ? "Player 2 wins" : "Draw";
+        System.out.printf("%dx%dx%d: %s%n", rows, cols, pool, outcome);
+        System.out.printf("Proof tree of %d positions, %d nodes searched in %d ms%n",
+                search.getProofSize(), search.getNodeCount(), millis);
+    }
+}
@@ -0,0 +1,24 @@
+package solver;
+
+import tilegame.CompactBoard;
+
+public interface StateIndex {
+    /**
+     * @return the number of ranks, so every rank r has 0 <= r < size()
+     */
+    long size();
+
+    /**
+     * Maps a position to its rank.
+     * @param board a position of the indexed board size
+     * @return the rank of the position, 0 <= result < size()
+     */
+    long rank(CompactBoard board);
+
+    /**
+     * Rebuilds the position with the given rank.
+     * @param rank a rank returned by rank(board)
+     * @return a new board holding the position
+     */
+    CompactBoard unrank(long rank);
+}
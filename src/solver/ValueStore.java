@@ -0,0 +1,257 @@
+package solver;
+
+import tilegame.CompactBoard;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public class ValueStore implements Closeable {
+
+    /**
+     * A file of game values indexed by a StateIndex rank, read and
+     * written through memory-mapped buffers. Nothing is copied onto
+     * the heap, so a store can be far larger than the heap. It only
+     * takes up memory for the pages in use.
+     *
+     * Each value takes 2, 4 or 8 bits. Code 0 means unknown. Other
+     * codes hold the value clamped to +/- getMaxValue(). That is 1 for
+     * 2 bits (win/draw/loss), 7 for 4 bits and 127 for 8 bits.
+     * Clamping commutes with min and max, so a minimax search over
+     * clamped values finds exactly the clamped game value.
+     *
+     * Files are opened with a shared mapping. Any number of processes
+     * can read a store while one thread writes it. Writers and readers
+     * see each value either as unknown or as written, never torn,
+     * because a code never spans two bytes. New files are sparse, so
+     * only the pages that get written take up disk space.
+     */
+
+    private static final int MAGIC = 0x54475653; // "TGVS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    // Files are mapped in segments, since one mapping holds at most 2 GiB
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final StateIndex index;
+    private final int bits;
+    private final int codeMask;
+    private final int maxValue;
+    private final boolean writable;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+
+    private ValueStore(StateIndex index, int bits, FileChannel channel, boolean writable) throws IOException {
+        this.index = index;
+        this.bits = bits;
+        this.codeMask = (1 << bits) - 1;
+        this.maxValue = ((1 << bits) - 2) / 2;
+        this.writable = writable;
+        this.channel = channel;
+
+        long length = fileLength(index, bits);
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int s = 0; s < segments.length; s++) {
+            long start = (long) s << SEGMENT_SHIFT;
+            segments[s] = channel.map(mode, start, Long.min(length - start, 1L << SEGMENT_SHIFT));
+        }
+    }
+
+    /**
+     * Creates a new store with every value unknown, replacing any
+     * existing file, and opens it for writing.
+     * @param file the file to create
+     * @param index maps positions to their place in the file
+     * @param bits the bits per value: 2, 4 or 8
+     * @return the new store
+     * @throws IOException if the file can't be created
+     */
+    public static ValueStore create(File file, StateIndex index, int bits) throws IOException {
+        if (bits != 2 && bits != 4 && bits != 8) {
+            throw new IllegalArgumentException("bits must be 2, 4 or 8");
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(bits).putLong(index.size());
+            header.flip();
+            channel.write(header, 0);
+
+            // Writing the last byte extends the file without filling in the rest
+            channel.write(ByteBuffer.allocate(1), fileLength(index, bits) - 1);
+
+            return new ValueStore(index, bits, channel, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing store.
+     * @param file the file to open
+     * @param index the index the store was created with
+     * @param writable true to open it for writing, false to only read it
+     * @return the opened store
+     * @throws IOException if the file can't be read, or wasn't made with
+     * an index of the same size
+     */
+    public static ValueStore open(File file, StateIndex index, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 20 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a value store");
+            }
+            int bits = header.getInt();
+            long size = header.getLong();
+            if (size != index.size()) {
+                throw new IOException(String.format("%s holds %d ranks, but the index has %d", file, size, index.size()));
+            }
+            if (channel.size() < fileLength(index, bits)) {
+                throw new IOException(file + " is truncated");
+            }
+            return new ValueStore(index, bits, channel, writable);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long fileLength(StateIndex index, int bits) {
+        if (index.size() > Long.MAX_VALUE / 8 - HEADER_BYTES) {
+            throw new IllegalArgumentException("The index has too many ranks for one file");
+        }
+        return HEADER_BYTES + (index.size() * bits + 7) / 8;
+    }
+
+    /**
+     * @return the index that maps positions into this store
+     */
+    public StateIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the number of bits per value
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @return the largest magnitude a stored value can have
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @param value a game value
+     * @return the value as it would be stored
+     */
+    public int clamp(int value) {
+        return Integer.max(-maxValue, Integer.min(maxValue, value));
+    }
+
+    /**
+     * @param rank a rank of the store's index
+     * @return the stored value, or UNKNOWN
+     */
+    public int get(long rank) {
+        int code = getCode(rank);
+        return code == 0 ? UNKNOWN : code - maxValue - 1;
+    }
+
+    /**
+     * @param board a position
+     * @return the stored value, or UNKNOWN
+     */
+    public int get(CompactBoard board) {
+        return get(index.rank(board));
+    }
+
+    /**
+     * Stores a value, clamped to +/- getMaxValue().
+     * Only one thread may write to a store at a time.
+     * @param rank a rank of the store's index
+     * @param value the game value
+     */
+    public void put(long rank, int value) {
+        setCode(rank, clamp(value) + maxValue + 1);
+    }
+
+    /**
+     * @param board a position
+     * @param value the game value
+     */
+    public void put(CompactBoard board, int value) {
+        put(index.rank(board), value);
+    }
+
+    /**
+     * @param rank a rank of the store's index
+     * @return the raw code stored for the rank, 0 if unknown
+     */
+    public int getCode(long rank) {
+        long bit = rank * bits;
+        long offset = HEADER_BYTES + (bit >>> 3);
+        int b = segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+        return (b >>> (bit & 7)) & codeMask;
+    }
+
+    /**
+     * @param rank a rank of the store's index
+     * @param code the raw code, 0 <= code < 2^bits
+     */
+    public void setCode(long rank, int code) {
+        if (!writable) {
+            throw new IllegalStateException("The store is open for reading only");
+        }
+        long bit = rank * bits;
+        long offset = HEADER_BYTES + (bit >>> 3);
+        MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & SEGMENT_MASK);
+        int shift = (int) (bit & 7);
+        int b = segment.get(position);
+        segment.put(position, (byte) ((b & ~(codeMask << shift)) | (code << shift)));
+    }
+
+    /**
+     * Writes every change made so far to the disk.
+     * Other processes see changes right away, without this.
+     */
+    public void force() {
+        if (writable) {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ranks at %d bits per value", index.size(), bits);
+    }
+}
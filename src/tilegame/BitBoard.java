@@ -0,0 +1,556 @@
+package tilegame;
+
+public class BitBoard {
+
+    /**
+     * This class is a bitboard implementation of a TileGame board for
+     * boards of up to 64 cells, such as 8x8. Each player's tiles are a
+     * 64-bit mask, locked tiles are another, and tile values are stored
+     * bit-sliced: plane k holds bit k of every tile's value.
+     *
+     * This turns the per-tile work of a play into a few whole-board
+     * operations. The neighbours of a cell are a precomputed mask from
+     * the board's Topology, the neighbours worth less than the played
+     * value are found by comparing all the value planes at once, and
+     * every flip is applied to the masks together. The neighbours of a
+     * whole set of cells on the square grid are found with shifts. The
+     * score is a difference of bit counts. Plays are made and unmade in
+     * place, like CompactBoard.
+     *
+     * Cells are numbered row * cols + col, and the position hash
+     * matches TileGame.getHash for the same position.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int cells;
+
+    public static final int MAX_CELLS = 64;
+    public static final int MAX_POOL = 127;
+
+    // Enough planes to hold any value up to MAX_POOL
+    private static final int PLANES = 7;
+
+    // Every cell of the board, and every cell but the first or last column
+    private final long boardMask;
+    private final long notFirstCol;
+    private final long notLastCol;
+
+    private final Topology topology;
+    // Per cell, a mask of its neighbours
+    private final long[] neighbourMasks;
+
+    // Tiles owned by each player, locked or not
+    private final long[] owners = new long[2];
+    private long locked;
+    private final long[] planes = new long[PLANES];
+
+    private final int[] pools = new int[2];
+    private int turn;
+    private long hash;
+
+    // Undo records, one per play: the cell, value and player, the tiles
+    // that were flipped, and the hash before the play
+    private final int[] history;
+    private final long[] flipHistory;
+    private final long[] hashHistory;
+    private int plies;
+
+    /**
+     * Creates an empty board on the standard square grid.
+     * @param rows number of rows to use
+     * @param cols number of columns to use
+     * @param start_pool how much pool each player starts with
+     */
+    public BitBoard(int rows, int cols, int start_pool) {
+        this(rows, cols, start_pool, Topology.SQUARE);
+    }
+
+    /**
+     * Creates an empty board.
+     * @param rows number of rows to use
+     * @param cols number of columns to use
+     * @param start_pool how much pool each player starts with
+     * @param topology the kind of board, such as Topology.HEX
+     */
+    public BitBoard(int rows, int cols, int start_pool, int topology) {
+        if (!fits(rows, cols)) {
+            throw new IllegalArgumentException(String.format("A bitboard holds at most %d cells", MAX_CELLS));
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+
+        boardMask = cells == 64 ? -1L : (1L << cells) - 1;
+        long firstCol = 0;
+        for (int r = 0; r < rows; r++) {
+            firstCol |= 1L << (r * cols);
+        }
+        long lastCol = firstCol << (cols - 1);
+        notFirstCol = boardMask & ~firstCol;
+        notLastCol = boardMask & ~lastCol;
+
+        this.topology = Topology.of(topology, rows, cols);
+        neighbourMasks = this.topology.masks;
+
+        // Every play fills a cell, so a game never has more plays than cells
+        history = new int[cells];
+        flipHistory = new long[cells];
+        hashHistory = new long[cells];
+
+        hash = Zobrist.poolKey(TileGame.PLAYER1, 0) ^ Zobrist.poolKey(TileGame.PLAYER2, 0);
+        setPool(TileGame.PLAYER1, start_pool);
+        setPool(TileGame.PLAYER2, start_pool);
+    }
+
+    /**
+     * Converts a TileGame board into a bitboard.
+     * @param game the board to convert
+     */
+    public BitBoard(TileGame game) {
+        this(game.rows, game.cols, 0, game.getTopology().kind);
+        for (int cell = 0; cell < cells; cell++) {
+            setRaw(cell, game.getRaw(cell));
+        }
+        setPool(TileGame.PLAYER1, game.getPlayerPool(TileGame.PLAYER1));
+        setPool(TileGame.PLAYER2, game.getPlayerPool(TileGame.PLAYER2));
+        turn = game.turn;
+    }
+
+    /*
+    Used internally to duplicate the board
+     */
+    private BitBoard(BitBoard source) {
+        this.rows = source.rows;
+        this.cols = source.cols;
+        this.cells = source.cells;
+        this.boardMask = source.boardMask;
+        this.notFirstCol = source.notFirstCol;
+        this.notLastCol = source.notLastCol;
+        this.topology = source.topology;
+        this.neighbourMasks = source.neighbourMasks;
+
+        this.owners[0] = source.owners[0];
+        this.owners[1] = source.owners[1];
+        this.locked = source.locked;
+        System.arraycopy(source.planes, 0, this.planes, 0, PLANES);
+
+        this.pools[0] = source.pools[0];
+        this.pools[1] = source.pools[1];
+        this.turn = source.turn;
+        this.hash = source.hash;
+
+        this.history = source.history.clone();
+        this.flipHistory = source.flipHistory.clone();
+        this.hashHistory = source.hashHistory.clone();
+        this.plies = source.plies;
+    }
+
+    /**
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return true if a board of the given size fits in a bitboard
+     */
+    public static boolean fits(int rows, int cols) {
+        return rows > 0 && cols > 0 && rows * cols <= MAX_CELLS;
+    }
+
+    /**
+     * @return a duplicate of the current board, including its undo history
+     */
+    public BitBoard copy() {
+        return new BitBoard(this);
+    }
+
+    /**
+     * @return a TileGame board holding the same position
+     */
+    public TileGame toTileGame() {
+        TileGame game = new TileGame(rows, cols, 0, topology.kind);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int cell = r * cols + c;
+                game.setTile(r, c, getOwner(cell), getValue(cell));
+            }
+        }
+        game.setPool(TileGame.PLAYER1, pools[TileGame.PLAYER1]);
+        game.setPool(TileGame.PLAYER2, pools[TileGame.PLAYER2]);
+        game.turn = turn;
+        return game;
+    }
+
+    /**
+     * @param cell the flattened cell index (row * cols + col)
+     * @return the owner of the cell, or TileGame.NO_PLAYER if it is open
+     */
+    public int getOwner(int cell) {
+        long bit = 1L << cell;
+        if ((owners[TileGame.PLAYER1] & bit) != 0) {
+            return TileGame.PLAYER1;
+        } else if ((owners[TileGame.PLAYER2] & bit) != 0) {
+            return TileGame.PLAYER2;
+        } else {
+            return TileGame.NO_PLAYER;
+        }
+    }
+
+    /**
+     * @param cell the flattened cell index
+     * @return the value of the cell, or 0 if it is open or locked
+     */
+    public int getValue(int cell) {
+        int value = 0;
+        for (int k = 0; k < PLANES; k++) {
+            value |= (int) ((planes[k] >>> cell) & 1) << k;
+        }
+        return value;
+    }
+
+    /**
+     * @param cell the flattened cell index
+     * @return the raw value stored at the given cell (see TileGame.getRaw)
+     */
+    public int getRaw(int cell) {
+        int owner = getOwner(cell);
+        if (owner == TileGame.PLAYER1) {
+            return getValue(cell) + 1;
+        } else if (owner == TileGame.PLAYER2) {
+            return -1 - getValue(cell);
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * @param row the 0-indexed row
+     * @param col the 0-indexed column
+     * @return the raw value stored at the given tile (see TileGame.getRaw)
+     */
+    public int getRaw(int row, int col) {
+        return getRaw(row * cols + col);
+    }
+
+    /**
+     * Stores a raw value, keeping the hash in sync.
+     * This is not recorded in the undo history.
+     * @param cell the flattened cell index
+     * @param raw the raw value to store
+     */
+    public void setRaw(int cell, int raw) {
+        int value = raw > 0 ? raw - 1 : raw < 0 ? -1 - raw : 0;
+        if (value > MAX_POOL) {
+            throw new IllegalArgumentException(String.format("Tile values must be at most %d", MAX_POOL));
+        }
+        hash ^= Zobrist.tileKey(cell, getRaw(cell)) ^ Zobrist.tileKey(cell, raw);
+
+        long bit = 1L << cell;
+        owners[TileGame.PLAYER1] &= ~bit;
+        owners[TileGame.PLAYER2] &= ~bit;
+        locked &= ~bit;
+        for (int k = 0; k < PLANES; k++) {
+            planes[k] &= ~bit;
+        }
+
+        if (raw != 0) {
+            owners[raw > 0 ? TileGame.PLAYER1 : TileGame.PLAYER2] |= bit;
+            setValue(bit, value);
+            if (value == 0) {
+                locked |= bit;
+            }
+        }
+    }
+
+    /**
+     * @param player either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @return a mask of the tiles the player owns, with bit
+     * row * cols + col set for each
+     */
+    public long getOwnerMask(int player) {
+        return owners[player];
+    }
+
+    /**
+     * @return a mask of the locked tiles
+     */
+    public long getLockedMask() {
+        return locked;
+    }
+
+    /**
+     * @return a mask of the open cells
+     */
+    public long getOpenMask() {
+        return boardMask & ~(owners[TileGame.PLAYER1] | owners[TileGame.PLAYER2]);
+    }
+
+    /**
+     * @return which tiles are next to each other on this board
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @param mask a set of cells
+     * @return the cells next to any cell of the mask
+     */
+    public long getNeighbourMask(long mask) {
+        if (topology.kind == Topology.SQUARE) {
+            return ((mask >>> cols) | (mask << cols) | ((mask & notFirstCol) >>> 1) | ((mask & notLastCol) << 1))
+                    & boardMask;
+        }
+        long result = 0;
+        for (long m = mask & boardMask; m != 0; m &= m - 1) {
+            result |= neighbourMasks[Long.numberOfTrailingZeros(m)];
+        }
+        return result;
+    }
+
+    /**
+     * Compares every tile's value against a value at once. Open and
+     * locked tiles have the value 0.
+     * @param value the value to compare against
+     * @return a mask of the cells whose value is less than the given value
+     */
+    public long getLessThanMask(int value) {
+        if (value > MAX_POOL) {
+            return boardMask;
+        }
+        // Walk the planes from the highest bit, tracking the cells that
+        // are equal to the value so far and the ones already less
+        long less = 0;
+        long equal = boardMask;
+        for (int k = PLANES - 1; k >= 0; k--) {
+            if (((value >>> k) & 1) != 0) {
+                less |= equal & ~planes[k];
+                equal &= planes[k];
+            } else {
+                equal &= ~planes[k];
+            }
+        }
+        return less;
+    }
+
+    /**
+     * @param cell the flattened cell index
+     * @param value the value that would be played
+     * @return a mask of the tiles the current player would flip by
+     * playing the value at the cell
+     */
+    public long getFlipMask(int cell, int value) {
+        return neighbourMasks[cell] & owners[1 - turn] & ~locked & getLessThanMask(value);
+    }
+
+    /**
+     * @param player either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @return the pool for the given player
+     */
+    public int getPool(int player) {
+        return pools[player];
+    }
+
+    /**
+     * Sets the pool for the given player.
+     * This is not recorded in the undo history.
+     * @param player either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @param pool the value to change it to, 0 <= pool <= MAX_POOL
+     */
+    public void setPool(int player, int pool) {
+        if (pool < 0 || pool > MAX_POOL) {
+            throw new IllegalArgumentException(String.format("Pools must be between 0 and %d", MAX_POOL));
+        }
+        hash ^= Zobrist.poolKey(player, pools[player]) ^ Zobrist.poolKey(player, pool);
+        pools[player] = pool;
+    }
+
+    /**
+     * @return either TileGame.PLAYER1 or TileGame.PLAYER2
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Sets the player to move.
+     * This is not recorded in the undo history.
+     * @param turn either TileGame.PLAYER1 or TileGame.PLAYER2
+     */
+    public void setTurn(int turn) {
+        this.turn = turn;
+    }
+
+    /**
+     * @return the Zobrist hash of the position, equal to TileGame.getHash()
+     * for the same position
+     */
+    public long getHash() {
+        return hash ^ Zobrist.turnKey(turn);
+    }
+
+    /**
+     * @return the number of plays that can currently be undone
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * @return the number of tiles Player 1 owns minus the number Player 2 owns
+     */
+    public int getScore() {
+        return Long.bitCount(owners[TileGame.PLAYER1]) - Long.bitCount(owners[TileGame.PLAYER2]);
+    }
+
+    /**
+     * @return the number of open cells
+     */
+    public int countOpenTiles() {
+        return cells - Long.bitCount(owners[TileGame.PLAYER1] | owners[TileGame.PLAYER2]);
+    }
+
+    /**
+     * Determines if the game is "finished". See TileGame.isGameFinished.
+     * @return true if neither play can play, or false otherwise.
+     */
+    public boolean isGameFinished() {
+        return (pools[0] == 0 && pools[1] == 0) || countOpenTiles() == 0;
+    }
+
+    /**
+     * Determines if the game has a winner. See TileGame.isGameForfeitable.
+     * @return true if the game has a winner, or false otherwise.
+     */
+    public boolean isGameForfeitable() {
+        int p1 = pools[TileGame.PLAYER1];
+        int p2 = pools[TileGame.PLAYER2];
+        if (p1 == 0 && p2 == 0) {
+            return true;
+        } else if (p1 > 0 && p2 == 0 && getScore() > 0) {
+            return true;
+        } else if (p2 > 0 && p1 == 0 && getScore() < 0) {
+            return true;
+        } else {
+            return countOpenTiles() == 0;
+        }
+    }
+
+    /**
+     * Determines if the current player may play the given value at a cell.
+     * @param cell the flattened cell index
+     * @param value pool value to consume
+     * @return true if the play is valid, or false otherwise
+     */
+    public boolean isPlayValid(int cell, int value) {
+        return 0 <= cell && cell < cells && (getOpenMask() & (1L << cell)) != 0 && value > 0 && pools[turn] >= value;
+    }
+
+    /**
+     * Applies a play for the current player, flipping tiles, consuming
+     * the pool and changing the turn. The play can be reverted with undo.
+     * @param row the 0-indexed row
+     * @param col the 0-indexed column
+     * @param value the value to play
+     * @return true if the play was valid, or false otherwise
+     */
+    public boolean play(int row, int col, int value) {
+        return 0 <= row && row < rows && 0 <= col && col < cols && play(row * cols + col, value);
+    }
+
+    /**
+     * Applies a play for the current player, flipping tiles, consuming
+     * the pool and changing the turn. The play can be reverted with undo.
+     * @param cell the flattened cell index
+     * @param value the value to play
+     * @return true if the play was valid, or false otherwise
+     */
+    public boolean play(int cell, int value) {
+        if (!isPlayValid(cell, value)) {
+            return false;
+        }
+
+        int player = turn;
+        int other = 1 - player;
+        long bit = 1L << cell;
+        long flips = getFlipMask(cell, value);
+
+        history[plies] = cell | (value << 8) | (player << 16);
+        flipHistory[plies] = flips;
+        hashHistory[plies] = hash;
+        plies++;
+
+        // At most eight tiles flip, so the hash is updated tile by tile
+        for (long m = flips; m != 0; m &= m - 1) {
+            int n = Long.numberOfTrailingZeros(m);
+            int raw = getRaw(n);
+            hash ^= Zobrist.tileKey(n, raw) ^ Zobrist.tileKey(n, raw > 0 ? 1 - raw : -1 - raw);
+        }
+        hash ^= Zobrist.tileKey(cell, player == TileGame.PLAYER1 ? value + 1 : -1 - value);
+
+        // Flipped tiles change hands and lose 1 value, locking at 0
+        owners[other] &= ~flips;
+        owners[player] |= flips | bit;
+        long borrow = flips;
+        long nonZero = 0;
+        for (int k = 0; k < PLANES; k++) {
+            long plane = planes[k];
+            planes[k] = plane ^ borrow;
+            borrow &= ~plane;
+            nonZero |= planes[k];
+        }
+        locked |= flips & ~nonZero;
+        setValue(bit, value);
+
+        setPool(player, pools[player] - value);
+        turn = pools[other] > 0 ? other : player;
+        return true;
+    }
+
+    /**
+     * Reverts the most recent play, restoring the exact prior state.
+     * @return false if there was nothing to undo
+     */
+    public boolean undo() {
+        if (plies == 0) {
+            return false;
+        }
+
+        plies--;
+        int record = history[plies];
+        int cell = record & 0xFF;
+        int value = (record >>> 8) & 0xFF;
+        int player = (record >>> 16) & 1;
+        long flips = flipHistory[plies];
+        long bit = 1L << cell;
+
+        owners[player] &= ~(flips | bit);
+        owners[1 - player] |= flips;
+        locked &= ~flips;
+        long carry = flips;
+        for (int k = 0; k < PLANES; k++) {
+            long plane = planes[k] & ~bit;
+            planes[k] = plane ^ carry;
+            carry &= plane;
+        }
+
+        pools[player] += value;
+        turn = player;
+        hash = hashHistory[plies];
+        return true;
+    }
+
+    /*
+    Stores a value in the planes of an empty cell
+     */
+    private void setValue(long bit, int value) {
+        for (int k = 0; value >>> k != 0; k++) {
+            if (((value >>> k) & 1) != 0) {
+                planes[k] |= bit;
+            }
+        }
+    }
+
+    public String toString() {
+        return toTileGame().toString();
+    }
+}
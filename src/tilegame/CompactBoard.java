@@ -0,0 +1,386 @@
+package tilegame;
+
+public class CompactBoard {
+
+    /**
+     * This class is a compact, mutable implementation of a TileGame
+     * board meant for searches. Tile raw values are packed 8 to a long,
+     * and the pools and turn share one more long. Plays are made and
+     * unmade in place, so a search can walk the tree without allocating.
+     * Flips walk the board's Topology table, so every topology plays
+     * with the same code.
+     *
+     * Raw values use the same encoding as TileGame.getRaw, and the
+     * position hash matches TileGame.getHash for the same position.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int cells;
+
+    // Packed tile raw values, followed by the pools and turn
+    private final long[] words;
+    private final int stateWord;
+
+    // The board's neighbour table, see Topology
+    private final Topology topology;
+    private final int[] offsets;
+    private final int[] neighbours;
+
+    // Undo records, one per play
+    private final long[] history;
+    private int plies;
+
+    private long hash;
+    private int score;
+    private int open;
+
+    public static final int MAX_CELLS = 255;
+    public static final int MAX_POOL = 126;
+
+    private static final int POOL_BITS = 16;
+    private static final long POOL_MASK = (1L << POOL_BITS) - 1;
+    private static final int TURN_SHIFT = 2 * POOL_BITS;
+
+    /**
+     * Creates an empty board on the standard square grid.
+     * @param rows number of rows to use
+     * @param cols number of columns to use
+     * @param start_pool how much pool each player starts with
+     */
+    public CompactBoard(int rows, int cols, int start_pool) {
+        this(rows, cols, start_pool, Topology.SQUARE);
+    }
+
+    /**
+     * Creates an empty board.
+     * @param rows number of rows to use
+     * @param cols number of columns to use
+     * @param start_pool how much pool each player starts with
+     * @param topology the kind of board, such as Topology.HEX
+     */
+    public CompactBoard(int rows, int cols, int start_pool, int topology) {
+        if (rows <= 0 || cols <= 0 || rows * cols > MAX_CELLS) {
+            throw new IllegalArgumentException(String.format("A compact board holds at most %d cells", MAX_CELLS));
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+
+        stateWord = (cells + 7) >>> 3;
+        words = new long[stateWord + 1];
+
+        this.topology = Topology.of(topology, rows, cols);
+        offsets = this.topology.offsets;
+        neighbours = this.topology.neighbours;
+
+        // Every play fills a cell, so a game never has more plays than cells
+        history = new long[cells];
+
+        open = cells;
+        hash = Zobrist.poolKey(TileGame.PLAYER1, 0) ^ Zobrist.poolKey(TileGame.PLAYER2, 0);
+        setPool(TileGame.PLAYER1, start_pool);
+        setPool(TileGame.PLAYER2, start_pool);
+    }
+
+    /**
+     * Converts a TileGame board into a compact board.
+     * @param game the board to convert
+     */
+    public CompactBoard(TileGame game) {
+        this(game.rows, game.cols, 0, game.getTopology().kind);
+        for (int cell = 0; cell < cells; cell++) {
+            setRaw(cell, game.getRaw(cell));
+        }
+        setPool(TileGame.PLAYER1, game.getPlayerPool(TileGame.PLAYER1));
+        setPool(TileGame.PLAYER2, game.getPlayerPool(TileGame.PLAYER2));
+        setTurn(game.turn);
+    }
+
+    /*
+    Used internally to duplicate the board
+     */
+    private CompactBoard(CompactBoard source) {
+        this.rows = source.rows;
+        this.cols = source.cols;
+        this.cells = source.cells;
+        this.stateWord = source.stateWord;
+        this.words = source.words.clone();
+        this.topology = source.topology;
+        this.offsets = source.offsets;
+        this.neighbours = source.neighbours;
+        this.history = source.history.clone();
+        this.plies = source.plies;
+        this.hash = source.hash;
+        this.score = source.score;
+        this.open = source.open;
+    }
+
+    /**
+     * @return a duplicate of the current board, including its undo history
+     */
+    public CompactBoard copy() {
+        return new CompactBoard(this);
+    }
+
+    /**
+     * @return a TileGame board holding the same position
+     */
+    public TileGame toTileGame() {
+        return new TileGame(this);
+    }
+
+    /**
+     * @param cell the flattened cell index (row * cols + col)
+     * @return the raw value stored at the given cell (see TileGame.getRaw)
+     */
+    public int getRaw(int cell) {
+        return (byte) (words[cell >>> 3] >>> ((cell & 7) << 3));
+    }
+
+    /**
+     * @param row the 0-indexed row
+     * @param col the 0-indexed column
+     * @return the raw value stored at the given tile (see TileGame.getRaw)
+     */
+    public int getRaw(int row, int col) {
+        return getRaw(row * cols + col);
+    }
+
+    /**
+     * Stores a raw value, keeping the hash, score and open count in sync.
+     * This is not recorded in the undo history.
+     * @param cell the flattened cell index
+     * @param raw the raw value to store
+     */
+    public void setRaw(int cell, int raw) {
+        int old = getRaw(cell);
+        int shift = (cell & 7) << 3;
+        words[cell >>> 3] = (words[cell >>> 3] & ~(0xFFL << shift)) | ((raw & 0xFFL) << shift);
+
+        hash ^= Zobrist.tileKey(cell, old) ^ Zobrist.tileKey(cell, raw);
+        score += Integer.signum(raw) - Integer.signum(old);
+        open += (raw == 0 ? 1 : 0) - (old == 0 ? 1 : 0);
+    }
+
+    /**
+     * @param player either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @return the pool for the given player
+     */
+    public int getPool(int player) {
+        return (int) ((words[stateWord] >>> (player * POOL_BITS)) & POOL_MASK);
+    }
+
+    /**
+     * Sets the pool for the given player.
+     * This is not recorded in the undo history.
+     * @param player either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @param pool the value to change it to, 0 <= pool <= MAX_POOL
+     */
+    public void setPool(int player, int pool) {
+        if (pool < 0 || pool > MAX_POOL) {
+            throw new IllegalArgumentException(String.format("Pools must be between 0 and %d", MAX_POOL));
+        }
+        hash ^= Zobrist.poolKey(player, getPool(player)) ^ Zobrist.poolKey(player, pool);
+        int shift = player * POOL_BITS;
+        words[stateWord] = (words[stateWord] & ~(POOL_MASK << shift)) | ((long) pool << shift);
+    }
+
+    /**
+     * @return either TileGame.PLAYER1 or TileGame.PLAYER2
+     */
+    public int getTurn() {
+        return (int) (words[stateWord] >>> TURN_SHIFT) & 1;
+    }
+
+    /**
+     * Sets the player to move.
+     * This is not recorded in the undo history.
+     * @param turn either TileGame.PLAYER1 or TileGame.PLAYER2
+     */
+    public void setTurn(int turn) {
+        words[stateWord] = (words[stateWord] & ~(1L << TURN_SHIFT)) | ((long) turn << TURN_SHIFT);
+    }
+
+    /**
+     * @return the Zobrist hash of the position, equal to TileGame.getHash()
+     * for the same position
+     */
+    public long getHash() {
+        return hash ^ Zobrist.turnKey(getTurn());
+    }
+
+    /**
+     * @return the number of plays that can currently be undone
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * @return the number of tiles Player 1 owns minus the number Player 2 owns
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return the number of open cells
+     */
+    public int countOpenTiles() {
+        return open;
+    }
+
+    /**
+     * @return which tiles are next to each other on this board
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @param cell the flattened cell index
+     * @return the number of neighbours of the cell
+     */
+    public int getNeighbourCount(int cell) {
+        return offsets[cell + 1] - offsets[cell];
+    }
+
+    /**
+     * @param cell the flattened cell index
+     * @param i which neighbour to fetch, 0 <= i < getNeighbourCount(cell)
+     * @return the index of the neighbouring cell
+     */
+    public int getNeighbour(int cell, int i) {
+        return neighbours[offsets[cell] + i];
+    }
+
+    /**
+     * Determines if the game is "finished". See TileGame.isGameFinished.
+     * @return true if neither play can play, or false otherwise.
+     */
+    public boolean isGameFinished() {
+        return open == 0 || (words[stateWord] & ((POOL_MASK << POOL_BITS) | POOL_MASK)) == 0;
+    }
+
+    /**
+     * Determines if the game has a winner. See TileGame.isGameForfeitable.
+     * @return true if the game has a winner, or false otherwise.
+     */
+    public boolean isGameForfeitable() {
+        int p1 = getPool(TileGame.PLAYER1);
+        int p2 = getPool(TileGame.PLAYER2);
+        if (p1 == 0 && p2 == 0) {
+            return true;
+        } else if (p1 > 0 && p2 == 0 && score > 0) {
+            return true;
+        } else if (p2 > 0 && p1 == 0 && score < 0) {
+            return true;
+        } else {
+            return open == 0;
+        }
+    }
+
+    /**
+     * Determines if the current player may play the given value at a cell.
+     * @param cell the flattened cell index
+     * @param value pool value to consume
+     * @return true if the play is valid, or false otherwise
+     */
+    public boolean isPlayValid(int cell, int value) {
+        return 0 <= cell && cell < cells && getRaw(cell) == 0 && value > 0 && getPool(getTurn()) >= value;
+    }
+
+    /**
+     * Applies a play for the current player, flipping tiles, consuming
+     * the pool and changing the turn. The play can be reverted with undo.
+     * @param row the 0-indexed row
+     * @param col the 0-indexed column
+     * @param value the value to play
+     * @return true if the play was valid, or false otherwise
+     */
+    public boolean play(int row, int col, int value) {
+        return 0 <= row && row < rows && 0 <= col && col < cols && play(row * cols + col, value);
+    }
+
+    /**
+     * Applies a play for the current player, flipping tiles, consuming
+     * the pool and changing the turn. The play can be reverted with undo.
+     * @param cell the flattened cell index
+     * @param value the value to play
+     * @return true if the play was valid, or false otherwise
+     */
+    public boolean play(int cell, int value) {
+        if (!isPlayValid(cell, value)) {
+            return false;
+        }
+
+        int player = getTurn();
+        setRaw(cell, player == TileGame.PLAYER1 ? value + 1 : -1 - value);
+
+        // Bit i is set if the cell's i-th neighbour flipped, at most 8 of them
+        int flips = 0;
+        for (int i = 0, base = offsets[cell], count = offsets[cell + 1] - base; i < count; i++) {
+            int n = neighbours[base + i];
+            int raw = getRaw(n);
+            if (player == TileGame.PLAYER1 ? raw < -1 && -1 - raw < value : raw > 1 && raw - 1 < value) {
+                setRaw(n, flip(raw));
+                flips |= 1 << i;
+            }
+        }
+
+        setPool(player, getPool(player) - value);
+
+        int other = 1 - player;
+        setTurn(getPool(other) > 0 ? other : player);
+
+        history[plies++] = cell | (value << 8) | (flips << 16) | ((long) player << 24);
+        return true;
+    }
+
+    /**
+     * Reverts the most recent play, restoring the exact prior state.
+     * @return false if there was nothing to undo
+     */
+    public boolean undo() {
+        if (plies == 0) {
+            return false;
+        }
+
+        long record = history[--plies];
+        int cell = (int) record & 0xFF;
+        int value = (int) (record >>> 8) & 0xFF;
+        int flips = (int) (record >>> 16) & 0xFF;
+        int player = (int) (record >>> 24) & 1;
+
+        for (int i = 0, base = offsets[cell]; flips >>> i != 0; i++) {
+            if ((flips & (1 << i)) != 0) {
+                int n = neighbours[base + i];
+                setRaw(n, unflip(getRaw(n)));
+            }
+        }
+        setRaw(cell, 0);
+        setPool(player, getPool(player) + value);
+        setTurn(player);
+        return true;
+    }
+
+    /*
+    Flips a claimed raw value, as TileGame.flip does
+     */
+    private static int flip(int raw) {
+        return raw > 0 ? 1 - raw : -1 - raw;
+    }
+
+    /*
+    Inverse of flip
+     */
+    private static int unflip(int raw) {
+        return raw < 0 ? 1 - raw : -1 - raw;
+    }
+
+    public String toString() {
+        return toTileGame().toString();
+    }
+}
@@ -0,0 +1,289 @@
+package tilegame;
+
+import java.util.Arrays;
+
+public class Symmetry {
+
+    /**
+     * The symmetries of a rows x cols board, used to treat rotated and
+     * reflected positions as the same position. Square boards have 8
+     * (rotations and reflections), other boards have 4 (identity,
+     * half turn, and the two mirrors).
+     *
+     * On other topologies, only the transforms that keep every
+     * neighbour a neighbour are symmetries. Tori and 8-neighbour boards
+     * keep them all, while hex boards mostly keep only the identity and
+     * either the half turn (even numbers of rows) or the top-bottom
+     * mirror (odd numbers of rows).
+     *
+     * Each symmetry is a permutation of the flattened cell indexes.
+     * The canonical representative of a position is the transformed
+     * position with the smallest Zobrist hash.
+     */
+
+    // Transform indexes
+    public static final int IDENTITY = 0;
+    public static final int ROTATE_90 = 1;
+    public static final int ROTATE_180 = 2;
+    public static final int ROTATE_270 = 3;
+    public static final int MIRROR_COLS = 4;
+    public static final int MIRROR_ROWS = 5;
+    public static final int TRANSPOSE = 6;
+    public static final int ANTI_TRANSPOSE = 7;
+
+    private static final int[] SQUARE = {IDENTITY, ROTATE_90, ROTATE_180, ROTATE_270,
+            MIRROR_COLS, MIRROR_ROWS, TRANSPOSE, ANTI_TRANSPOSE};
+    private static final int[] RECTANGLE = {IDENTITY, ROTATE_180, MIRROR_COLS, MIRROR_ROWS};
+
+    public final int rows;
+    public final int cols;
+    public final Topology topology;
+
+    private final int[] transforms;
+
+    // targets[i][cell] is where cell goes under transforms[i];
+    // sources[i][cell] is the cell that lands on cell.
+    private final int[][] targets;
+    private final int[][] sources;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     */
+    public Symmetry(int rows, int cols) {
+        this(Topology.of(Topology.SQUARE, rows, cols));
+    }
+
+    /**
+     * @param topology the board's topology
+     */
+    public Symmetry(Topology topology) {
+        this.rows = topology.rows;
+        this.cols = topology.cols;
+        this.topology = topology;
+
+        int[] candidates = rows == cols ? SQUARE : RECTANGLE;
+        int size = 0;
+        int[] kept = new int[candidates.length];
+        for (int transform : candidates) {
+            if (preservesNeighbours(transform)) {
+                kept[size++] = transform;
+            }
+        }
+        this.transforms = Arrays.copyOf(kept, size);
+
+        int cells = rows * cols;
+        targets = new int[transforms.length][cells];
+        sources = new int[transforms.length][cells];
+        for (int i = 0; i < transforms.length; i++) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int target = transformCell(transforms[i], r, c);
+                    targets[i][r * cols + c] = target;
+                    sources[i][target] = r * cols + c;
+                }
+            }
+        }
+    }
+
+    /*
+    Determines if the transform maps every pair of neighbours to
+    neighbours. Since it permutes the cells, it is then a symmetry.
+     */
+    private boolean preservesNeighbours(int transform) {
+        for (int cell = 0; cell < topology.cells; cell++) {
+            int target = transformCell(transform, cell / cols, cell % cols);
+            for (int i = 0; i < topology.getNeighbourCount(cell); i++) {
+                int n = topology.getNeighbour(cell, i);
+                int mapped = transformCell(transform, n / cols, n % cols);
+                boolean found = false;
+                for (int j = 0; j < topology.getNeighbourCount(target) && !found; j++) {
+                    found = topology.getNeighbour(target, j) == mapped;
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of symmetries of this board, 8 or 4 on
+     * square grids, fewer on hex grids
+     */
+    public int size() {
+        return transforms.length;
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @return the transform index (IDENTITY, ROTATE_90, ...) of the i-th symmetry
+     */
+    public int getTransform(int i) {
+        return transforms[i];
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @param cell a flattened cell index
+     * @return where the cell is moved to by the i-th symmetry
+     */
+    public int mapCell(int i, int cell) {
+        return targets[i][cell];
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @param cell a flattened cell index
+     * @return the cell that the i-th symmetry moves onto the given cell
+     */
+    public int sourceCell(int i, int cell) {
+        return sources[i][cell];
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @return the index j of the symmetry that undoes the i-th symmetry
+     */
+    public int inverse(int i) {
+        search:
+        for (int j = 0; j < transforms.length; j++) {
+            for (int cell = 0; cell < rows * cols; cell++) {
+                if (targets[j][targets[i][cell]] != cell) {
+                    continue search;
+                }
+            }
+            return j;
+        }
+        throw new IllegalStateException("Symmetry has no inverse");
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @param game the position to transform
+     * @return the Zobrist hash the transformed position would have
+     */
+    public long hash(int i, TileGame game) {
+        long result = Zobrist.poolKey(TileGame.PLAYER1, game.getPlayerPool(TileGame.PLAYER1))
+                ^ Zobrist.poolKey(TileGame.PLAYER2, game.getPlayerPool(TileGame.PLAYER2))
+                ^ Zobrist.turnKey(game.turn);
+        int[] target = targets[i];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int raw = game.getRaw(r, c);
+                if (raw != 0) {
+                    result ^= Zobrist.tileKey(target[r * cols + c], raw);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @param board the position to transform
+     * @return the Zobrist hash the transformed position would have
+     */
+    public long hash(int i, CompactBoard board) {
+        long result = Zobrist.poolKey(TileGame.PLAYER1, board.getPool(TileGame.PLAYER1))
+                ^ Zobrist.poolKey(TileGame.PLAYER2, board.getPool(TileGame.PLAYER2))
+                ^ Zobrist.turnKey(board.getTurn());
+        int[] target = targets[i];
+        for (int cell = 0; cell < board.cells; cell++) {
+            int raw = board.getRaw(cell);
+            if (raw != 0) {
+                result ^= Zobrist.tileKey(target[cell], raw);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param game a position on this board
+     * @return the hash of the canonical representative of the position,
+     * which is the same for every rotation and reflection of it
+     */
+    public long canonicalHash(TileGame game) {
+        long result = game.getHash();
+        for (int i = 1; i < transforms.length; i++) {
+            result = Long.min(result, hash(i, game));
+        }
+        return result;
+    }
+
+    /**
+     * @param board a position on this board
+     * @return the hash of the canonical representative of the position
+     */
+    public long canonicalHash(CompactBoard board) {
+        long result = board.getHash();
+        for (int i = 1; i < transforms.length; i++) {
+            result = Long.min(result, hash(i, board));
+        }
+        return result;
+    }
+
+    /**
+     * @param game a position on this board
+     * @return the symmetry i that maps the position to its canonical
+     * representative. Use transform(i, game) to build it.
+     */
+    public int canonicalIndex(TileGame game) {
+        int best = 0;
+        long bestHash = game.getHash();
+        for (int i = 1; i < transforms.length; i++) {
+            long h = hash(i, game);
+            if (h < bestHash) {
+                bestHash = h;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param i 0 <= i < size()
+     * @param game the position to transform
+     * @return a new board holding the transformed position
+     */
+    public TileGame transform(int i, TileGame game) {
+        TileGame result = game.copy();
+        int[] source = sources[i];
+        for (int cell = 0; cell < rows * cols; cell++) {
+            int from = source[cell];
+            int raw = game.getRaw(from / cols, from % cols);
+            if (raw > 0) {
+                result.setTile(cell / cols, cell % cols, TileGame.PLAYER1, raw - 1);
+            } else if (raw < 0) {
+                result.setTile(cell / cols, cell % cols, TileGame.PLAYER2, -1 - raw);
+            } else {
+                result.setTile(cell / cols, cell % cols, TileGame.NO_PLAYER, 0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param game a position on this board
+     * @return the canonical representative of the position
+     */
+    public TileGame canonical(TileGame game) {
+        return transform(canonicalIndex(game), game);
+    }
+
+    private int transformCell(int transform, int r, int c) {
+        int n = rows - 1;
+        int m = cols - 1;
+        switch (transform) {
+            case ROTATE_90: return c * cols + (n - r);
+            case ROTATE_180: return (n - r) * cols + (m - c);
+            case ROTATE_270: return (m - c) * cols + r;
+            case MIRROR_COLS: return r * cols + (m - c);
+            case MIRROR_ROWS: return (n - r) * cols + c;
+            case TRANSPOSE: return c * cols + r;
+            case ANTI_TRANSPOSE: return (m - c) * cols + (n - r);
+            default: return r * cols + c;
+        }
+    }
+}
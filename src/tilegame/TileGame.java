@@ -6,14 +6,32 @@ public class TileGame {
      * This class is an implementation of a TileGame board,
      * including helper functions for setting/getting properties
      * of the board.
+     *
+     * Tiles are stored flattened, row * cols + col, and play flips
+     * neighbours by walking the board's Topology table, so boards of
+     * every topology share the same code.
      */
 
     public final int rows;
     public final int cols;
     public int turn;
-    private final int[][] data;
+    private final Topology topology;
+    private final int[] data;
     private final int[] pools;
 
+    /*
+    Zobrist hash of the tiles and pools, kept up to date by every
+    mutation. The turn is mixed in by getHash(), since it is public.
+     */
+    private long hash;
+
+    /*
+    Running counts, kept up to date by setRaw, so that score and
+    end-of-game queries don't rescan the board
+     */
+    private int score;
+    private int open;
+
     public static final int PLAYER1 = 0;
     public static final int PLAYER2 = 1;
     public static final int NO_PLAYER = -1;
@@ -24,19 +42,18 @@ public class TileGame {
     private TileGame(TileGame source) {
         this.rows = source.rows;
         this.cols = source.cols;
+        this.topology = source.topology;
 
         this.pools = new int[2];
         this.pools[0] = source.pools[0];
         this.pools[1] = source.pools[1];
 
         this.turn = source.turn;
+        this.hash = source.hash;
+        this.score = source.score;
+        this.open = source.open;
 
-        this.data = new int[rows][cols];
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                this.data[r][c] = source.data[r][c];
-            }
-        }
+        this.data = source.data.clone();
     }
 
     /**
@@ -47,20 +64,67 @@ public class TileGame {
     }
 
     /**
-     * Creates a Tile Game board.
+     * Creates a Tile Game board on the standard square grid.
      * @param rows number of rows to use
      * @param cols number of columns to use
      * @param start_pool how much pool each player starts with
      */
     public TileGame(int rows, int cols, int start_pool) {
+        this(rows, cols, start_pool, Topology.SQUARE);
+    }
+
+    /**
+     * Creates a Tile Game board.
+     * @param rows number of rows to use
+     * @param cols number of columns to use
+     * @param start_pool how much pool each player starts with
+     * @param topology the kind of board, such as Topology.HEX
+     */
+    public TileGame(int rows, int cols, int start_pool, int topology) {
         this.rows = rows;
         this.cols = cols;
+        this.topology = Topology.of(topology, rows, cols);
 
         pools = new int[2];
         pools[0] = start_pool;
         pools[1] = start_pool;
 
-        data = new int[rows][cols];
+        data = new int[rows * cols];
+        open = rows * cols;
+
+        hash = Zobrist.poolKey(PLAYER1, start_pool) ^ Zobrist.poolKey(PLAYER2, start_pool);
+    }
+
+    /**
+     * Creates a Tile Game board holding the same position as
+     * a compact board.
+     * @param board the board to convert
+     */
+    public TileGame(CompactBoard board) {
+        this(board.rows, board.cols, 0, board.getTopology().kind);
+
+        for (int cell = 0; cell < data.length; cell++) {
+            setRaw(cell, board.getRaw(cell));
+        }
+        setPool(PLAYER1, board.getPool(PLAYER1));
+        setPool(PLAYER2, board.getPool(PLAYER2));
+        turn = board.getTurn();
+    }
+
+    /**
+     * @return a compact board holding the same position, which
+     * supports playing and undoing moves in place
+     */
+    public CompactBoard toCompactBoard() {
+        return new CompactBoard(this);
+    }
+
+    /**
+     * @return a bitboard holding the same position. Only boards of up
+     * to BitBoard.MAX_CELLS cells fit.
+     */
+    public BitBoard toBitBoard() {
+        return new BitBoard(this);
     }
 
     /**
@@ -77,7 +141,22 @@ public class TileGame {
      * @return the raw value that represents this tile
      */
     public int getRaw(int row, int col) {
-        return data[row][col];
+        return data[row * cols + col];
+    }
+
+    /**
+     * @param cell the flattened cell index (row * cols + col)
+     * @return the raw value that represents this tile (see getRaw)
+     */
+    public int getRaw(int cell) {
+        return data[cell];
+    }
+
+    /**
+     * @return which tiles are next to each other on this board
+     */
+    public Topology getTopology() {
+        return topology;
     }
 
     /**
@@ -88,7 +167,7 @@ public class TileGame {
      * If the tile is locked, returns 0.
      */
     public int getTileValue(int row, int col) {
-        int value = data[row][col];
+        int value = data[row * cols + col];
         if (value > 1) {
             return value - 1;
         } else if (value < -1) {
@@ -105,7 +184,7 @@ public class TileGame {
      * If the tile is unclaimed, returns tilegame.TileGame.NO_PLAYER
      */
     public int getTileOwner(int row, int col) {
-        int value = data[row][col];
+        int value = data[row * cols + col];
         if (value > 0) {
             return PLAYER1;
         } else if (value < 0) {
@@ -121,7 +200,7 @@ public class TileGame {
      * @return true if the tile can be claimed, false otherwise
      */
     public boolean isTileOpen(int row, int col) {
-        return data[row][col] == 0;
+        return data[row * cols + col] == 0;
     }
 
     /**
@@ -130,7 +209,7 @@ public class TileGame {
      * @return true if the cell has been claimed, false otherwise
      */
     public boolean isTileClaimed(int row, int col) {
-        return data[row][col] != 0;
+        return data[row * cols + col] != 0;
     }
 
     /**
@@ -139,7 +218,8 @@ public class TileGame {
      * @return true if the cell has been flipped to a 0 value, false otherwise
      */
     public boolean isTileLocked(int row, int col) {
-        return data[row][col] == 1 || data[row][col] == -1;
+        int value = data[row * cols + col];
+        return value == 1 || value == -1;
     }
 
     /**
@@ -157,6 +237,16 @@ public class TileGame {
         return pools[player];
     }
 
+    /**
+     * Gets the Zobrist hash of the current position.
+     * The hash covers every tile's raw value, both pools and the
+     * current turn, and is maintained incrementally, so this is O(1).
+     * @return the 64-bit hash of this position
+     */
+    public long getHash() {
+        return hash ^ Zobrist.turnKey(turn);
+    }
+
     /**
      * @param row the 0-indexed row
      * @param col the 0-indexed column
@@ -207,18 +297,7 @@ public class TileGame {
      * @return true if neither play can play, or false otherwise.
      */
     public boolean isGameFinished() {
-        if (pools[0] == 0 && pools[1] == 0) {
-            return true;
-        } else {
-            for (int r = 0; r < rows; r++) {
-                for (int c = 0; c < cols; c++) {
-                    if (data[r][c] == 0) {
-                        return false;
-                    }
-                }
-            }
-            return true;
-        }
+        return (pools[0] == 0 && pools[1] == 0) || open == 0;
     }
 
     /**
@@ -234,19 +313,6 @@ public class TileGame {
         if (pools[0] == 0 && pools[1] == 0) {
             return true;
         } else {
-            int score = 0;
-            int open = 0;
-            for (int r = 0; r < rows; r++) {
-                for (int c = 0; c < cols; c++) {
-                    if (data[r][c] > 0) {
-                        score++;
-                    } else if (data[r][c] < 0) {
-                        score--;
-                    } else {
-                        open++;
-                    }
-                }
-            }
             if (pools[0] > 0 && pools[1] == 0 && score > 0) {
                 return true;
             } else if (pools[1] > 0 && pools[0] == 0 && score < 0) {
@@ -260,41 +326,21 @@ public class TileGame {
 
     /**
      * Counts the number of tiles that are unclaimed.
-     * This value is not cached.
+     * This value is cached, so this is O(1).
      * @return the number of open cells, 0 <= result <= rows * cols
      */
     public int countOpenTiles() {
-        int result = 0;
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (data[r][c] == 0) {
-                    result++;
-                }
-            }
-        }
-
-        return result;
+        return open;
     }
 
 
     /**
      * Counts the number of tiles that have been claimed.
-     * This value is not cached.
+     * This value is cached, so this is O(1).
      * @return the number of closed cells, 0 <= result <= rows * cols
      */
     public int countClaimedTiles() {
-        int result = 0;
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (data[r][c] != 0) {
-                    result++;
-                }
-            }
-        }
-
-        return result;
+        return rows * cols - open;
     }
 
 
@@ -302,23 +348,13 @@ public class TileGame {
      * Counts the current score of the game.
      * The score is determined by the difference between the number
      * of tiles Player 1 owns and the number of tiles Player 2 owns.
+     * This value is cached, so this is O(1).
      * @return > 0 if PLAYER1 is in the lead,
      *         < 0 if PLAYER2 is in the lead,
      *         = 0 if tied.
      */
     public int getScore() {
-        int result = 0;
-
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (data[r][c] > 0) {
-                    result++;
-                } else if (data[r][c] < 0) {
-                    result--;
-                }
-            }
-        }
-        return result;
+        return score;
     }
 
 
@@ -375,7 +411,7 @@ public class TileGame {
      * @return true if the play is valid, or false otherwise
      */
     public boolean isPlayValid(int row, int col, int value) {
-        return tileExists(row, col) && data[row][col] == 0 && value > 0 && pools[turn] >= value;
+        return tileExists(row, col) && data[row * cols + col] == 0 && value > 0 && pools[turn] >= value;
     }
 
     /**
@@ -389,7 +425,7 @@ public class TileGame {
      * @return true if the play is valid, or false otherwise
      */
     public boolean isPlayValid(int row, int col, int player, int value) {
-        return tileExists(row, col) && data[row][col] == 0 && value > 0 && pools[player] >= value;
+        return tileExists(row, col) && data[row * cols + col] == 0 && value > 0 && pools[player] >= value;
     }
 
     /**
@@ -465,16 +501,18 @@ public class TileGame {
     public boolean play(int row, int col, int player, int value) {
         if (isPlayValid(row, col, player, value)) {
 
+            int cell = row * cols + col;
             setTile(row, col, player, value);
-            flipTile(row - 1, col, player, value);
-            flipTile(row + 1, col, player, value);
-            flipTile(row, col - 1, player, value);
-            flipTile(row, col + 1, player, value);
+            int[] neighbours = topology.neighbours;
+            for (int i = topology.offsets[cell], end = topology.offsets[cell + 1]; i < end; i++) {
+                flipTile(neighbours[i], player, value);
+            }
 
-            pools[player] -= value;
+            setPool(player, pools[player] - value);
 
             turn = nextTurn();
 
+            assert checkConsistency();
             return true;
 
         } else {
@@ -493,13 +531,51 @@ public class TileGame {
      *              If player is NO_PLAYER, this value is ignored.
      */
     public void setTile(int row, int col, int player, int value) {
+        int raw;
         if (player == PLAYER1) {
-            data[row][col] = value + 1;
+            raw = value + 1;
         } else if (player == PLAYER2) {
-            data[row][col] = -1-value;
+            raw = -1-value;
         } else {
-            data[row][col] = 0;
+            raw = 0;
         }
+        setRaw(row * cols + col, raw);
+    }
+
+    /*
+    Stores a raw value, keeping the hash in sync
+     */
+    private void setRaw(int cell, int raw) {
+        int old = data[cell];
+        hash ^= Zobrist.tileKey(cell, old) ^ Zobrist.tileKey(cell, raw);
+        score += Integer.signum(raw) - Integer.signum(old);
+        open += (raw == 0 ? 1 : 0) - (old == 0 ? 1 : 0);
+        data[cell] = raw;
+    }
+
+    /**
+     * Checks the cached score, open tile count and hash against a
+     * full scan of the board. Every successful play runs this check
+     * when assertions are enabled (java -ea), which makes the run
+     * much slower but catches any mutation that skips setRaw.
+     * @return true if everything matches
+     * @throws IllegalStateException if a cached value is out of date
+     */
+    public boolean checkConsistency() {
+        int expectedScore = 0;
+        int expectedOpen = 0;
+        long expectedHash = Zobrist.poolKey(PLAYER1, pools[PLAYER1]) ^ Zobrist.poolKey(PLAYER2, pools[PLAYER2]);
+        for (int cell = 0; cell < data.length; cell++) {
+            expectedScore += Integer.signum(data[cell]);
+            expectedOpen += data[cell] == 0 ? 1 : 0;
+            expectedHash ^= Zobrist.tileKey(cell, data[cell]);
+        }
+        if (score != expectedScore || open != expectedOpen || hash != expectedHash) {
+            throw new IllegalStateException(String.format(
+                    "Cached score %d, open %d, hash %016x but the board has %d, %d, %016x",
+                    score, open, hash, expectedScore, expectedOpen, expectedHash));
+        }
+        return true;
     }
 
     /**
@@ -508,6 +584,7 @@ public class TileGame {
      * @param new_value the value to change it to
      */
     public void setPool(int player, int new_value) {
+        hash ^= Zobrist.poolKey(player, pools[player]) ^ Zobrist.poolKey(player, new_value);
         pools[player] = new_value;
     }
 
@@ -520,7 +597,7 @@ public class TileGame {
      * @return true if the tile can be flipped, or false otherwise
      */
     public boolean isTileFlippable(int row, int col) {
-        return tileExists(row, col) && (data[row][col] < -1 || data[row][col] > 1);
+        return tileExists(row, col) && (data[row * cols + col] < -1 || data[row * cols + col] > 1);
     }
 
     /**
@@ -534,9 +611,9 @@ public class TileGame {
      */
     public boolean isTileFlippable(int row, int col, int player) {
         if (player == PLAYER1) {
-            return tileExists(row, col) && (data[row][col] < -1);
+            return tileExists(row, col) && (data[row * cols + col] < -1);
         } else if(player == PLAYER2) {
-            return tileExists(row, col) && (data[row][col] > 1);
+            return tileExists(row, col) && (data[row * cols + col] > 1);
         } else {
             return false;
         }
@@ -544,25 +621,25 @@ public class TileGame {
 
     /**
      * Flips a tile. If the tile is not flippable, this does nothing.
-     * @param row the 0-indexed row
-     * @param col the 0-indexeed column
+     * The cell is one of the topology's neighbours, so it always exists.
+     * @param cell the flattened cell index
      * @param player the player who is performing the flip
      * @param value the value of the flip
      */
-    private void flipTile(int row, int col, int player, int value) {
-        if (isTileFlippable(row, col, player) && getTileValue(row, col) < value) {
-            flip(row, col);
+    private void flipTile(int cell, int player, int value) {
+        int raw = data[cell];
+        if (player == PLAYER1 ? raw < -1 && -1 - raw < value : raw > 1 && raw - 1 < value) {
+            flip(cell);
         }
     }
 
     /**
      * Flips the raw data value for the given cell.
      * Assumes that the tile is claimed.
-     * @param row the 0-indexed row
-     * @param col the 0-indexed column
+     * @param cell the flattened cell index
      */
-    private void flip(int row, int col) {
-        data[row][col] = data[row][col] > 0 ? 1-data[row][col] : -1-data[row][col];
+    private void flip(int cell) {
+        setRaw(cell, data[cell] > 0 ? 1-data[cell] : -1-data[cell]);
     }
 
     
@@ -571,6 +648,10 @@ public class TileGame {
         
         for (int r = 0; r < rows; r++) {
             result.append("    ");
+            // Hex rows are staggered, odd rows shifted half a tile right
+            if (topology.kind == Topology.HEX && (r & 1) != 0) {
+                result.append("  ");
+            }
             for (int c = 0; c < cols; c++) {
                 int owner = getTileOwner(r, c);
                 int value = getTileValue(r, c);
@@ -0,0 +1,197 @@
+package tilegame;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Topology {
+
+    /**
+     * Which cells of a board are next to each other. A play flips the
+     * neighbours of the tile it claims, so the topology decides the
+     * shape of the game.
+     *
+     * The neighbours are precomputed once per board configuration
+     * into a flat table: cell i's neighbours are
+     * neighbours[offsets[i]] to neighbours[offsets[i + 1] - 1]. Boards
+     * walk the table when they play, without bounds checks, so every
+     * topology plays at the same speed. Topologies are immutable and
+     * shared, so get them with Topology.of.
+     *
+     * Cells are flattened as row * cols + col in every topology. On a
+     * hex grid, odd rows are shifted half a cell to the right.
+     */
+
+    // Kinds of topology
+    /** The standard grid, where tiles are next to the tiles above, below, left and right */
+    public static final int SQUARE = 0;
+    /** The square grid, with the edges wrapping around to the opposite side */
+    public static final int TORUS = 1;
+    /** A hex grid, where tiles have up to six neighbours */
+    public static final int HEX = 2;
+    /** The square grid, with diagonal tiles as neighbours too */
+    public static final int EIGHT_NEIGHBOUR = 3;
+
+    /** The most neighbours any cell has in any topology */
+    public static final int MAX_NEIGHBOURS = 8;
+
+    private static final String[] NAMES = {"square", "torus", "hex", "eight"};
+
+    private static final ConcurrentHashMap<Long, Topology> CACHE = new ConcurrentHashMap<>();
+
+    public final int kind;
+    public final int rows;
+    public final int cols;
+    public final int cells;
+
+    final int[] offsets;
+    final int[] neighbours;
+    // Per cell, a mask of its neighbours, or null if the board is too big for a bitboard
+    final long[] masks;
+
+    /**
+     * @param kind SQUARE, TORUS, HEX or EIGHT_NEIGHBOUR
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return the topology, shared by every board of the same configuration
+     */
+    public static Topology of(int kind, int rows, int cols) {
+        if (kind < SQUARE || kind > EIGHT_NEIGHBOUR) {
+            throw new IllegalArgumentException("unknown topology " + kind);
+        }
+        if (rows <= 0 || cols <= 0 || (long) rows * cols >= Zobrist.POOL_SLOT) {
+            throw new IllegalArgumentException("boards must have at least 1 and fewer than 2^20 cells");
+        }
+        long key = ((long) kind << 56) | ((long) rows << 28) | cols;
+        return CACHE.computeIfAbsent(key, k -> new Topology(kind, rows, cols));
+    }
+
+    /**
+     * @param name a name returned by getName, such as "hex"
+     * @return the kind of topology with that name
+     */
+    public static int parse(String name) {
+        for (int kind = 0; kind < NAMES.length; kind++) {
+            if (NAMES[kind].equalsIgnoreCase(name)) {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("unknown topology " + name);
+    }
+
+    private Topology(int kind, int rows, int cols) {
+        this.kind = kind;
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+
+        offsets = new int[cells + 1];
+        int[] table = new int[cells * MAX_NEIGHBOURS];
+        int size = 0;
+        int[] found = new int[MAX_NEIGHBOURS];
+        for (int cell = 0; cell < cells; cell++) {
+            offsets[cell] = size;
+            int count = findNeighbours(cell / cols, cell % cols, found);
+            for (int i = 0; i < count; i++) {
+                table[size++] = found[i];
+            }
+        }
+        offsets[cells] = size;
+        neighbours = Arrays.copyOf(table, size);
+
+        if (BitBoard.fits(rows, cols)) {
+            masks = new long[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                for (int i = offsets[cell]; i < offsets[cell + 1]; i++) {
+                    masks[cell] |= 1L << neighbours[i];
+                }
+            }
+        } else {
+            masks = null;
+        }
+    }
+
+    /*
+    Fills found with the distinct neighbours of a tile, never the tile
+    itself, which small tori would otherwise wrap back to. Returns the
+    number found.
+     */
+    private int findNeighbours(int row, int col, int[] found) {
+        int count = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                if ((dr == 0 && dc == 0) || !isStep(row, dr, dc)) {
+                    continue;
+                }
+                int r = row + dr;
+                int c = col + dc;
+                if (kind == TORUS) {
+                    r = Math.floorMod(r, rows);
+                    c = Math.floorMod(c, cols);
+                } else if (r < 0 || r >= rows || c < 0 || c >= cols) {
+                    continue;
+                }
+                int cell = r * cols + c;
+                boolean seen = cell == row * cols + col;
+                for (int i = 0; i < count && !seen; i++) {
+                    seen = found[i] == cell;
+                }
+                if (!seen) {
+                    found[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+
+    /*
+    Determines if moving by (dr, dc) from a tile in the given row
+    reaches a neighbour
+     */
+    private boolean isStep(int row, int dr, int dc) {
+        switch (kind) {
+            case EIGHT_NEIGHBOUR:
+                return true;
+            case HEX:
+                // Odd rows are shifted right, so they reach up and down to the right
+                return dr == 0 || dc == 0 || dc == ((row & 1) == 0 ? -1 : 1);
+            default:
+                return dr == 0 || dc == 0;
+        }
+    }
+
+    /**
+     * @param cell the flattened cell index (row * cols + col)
+     * @return the number of neighbours of the cell
+     */
+    public int getNeighbourCount(int cell) {
+        return offsets[cell + 1] - offsets[cell];
+    }
+
+    /**
+     * @param cell the flattened cell index
+     * @param i 0 <= i < getNeighbourCount(cell)
+     * @return the flattened index of the cell's i-th neighbour
+     */
+    public int getNeighbour(int cell, int i) {
+        return neighbours[offsets[cell] + i];
+    }
+
+    /**
+     * @return the name of the topology, which parse accepts
+     */
+    public String getName() {
+        return name(kind);
+    }
+
+    /**
+     * @param kind SQUARE, TORUS, HEX or EIGHT_NEIGHBOUR
+     * @return the name of the kind of topology, which parse accepts
+     */
+    public static String name(int kind) {
+        return NAMES[kind];
+    }
+
+    public String toString() {
+        return String.format("%dx%d %s", rows, cols, getName());
+    }
+}
@@ -0,0 +1,66 @@
+package tilegame;
+
+public final class Zobrist {
+
+    /**
+     * Zobrist keys used to hash TileGame positions.
+     * Keys are derived from a SplitMix64 mix of the (slot, value) pair
+     * instead of being looked up in a table, so any board size and any
+     * pool value can be hashed without sizing a key table up front.
+     * Every board representation in this package hashes with these keys,
+     * so equal positions hash equally no matter how they are stored.
+     */
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    // Pool keys use the slots after the last cell, so Topology.of keeps boards smaller than this
+    static final int POOL_SLOT = 1 << 20;
+
+    /**
+     * The key that is mixed in when it is player 2's turn.
+     */
+    public static final long TURN_KEY = mix(SEED ^ 0x7F4A7C15L);
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param cell the flattened cell index (row * cols + col)
+     * @param raw the raw value stored in the cell (see TileGame.getRaw)
+     * @return the key for the given cell holding the given raw value.
+     * An unclaimed cell (raw value 0) always contributes 0.
+     */
+    public static long tileKey(int cell, int raw) {
+        if (raw == 0) {
+            return 0;
+        }
+        return mix(SEED + ((long) cell << 32) + raw);
+    }
+
+    /**
+     * @param player either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @param pool the pool value held by that player
+     * @return the key for the given player holding the given pool
+     */
+    public static long poolKey(int player, int pool) {
+        return mix(SEED + ((long) (POOL_SLOT + player) << 32) + pool);
+    }
+
+    /**
+     * @param turn either TileGame.PLAYER1 or TileGame.PLAYER2
+     * @return the key contribution of the side to move
+     */
+    public static long turnKey(int turn) {
+        return turn == TileGame.PLAYER2 ? TURN_KEY : 0;
+    }
+
+    /*
+    SplitMix64 finalizer
+     */
+    static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,83 @@
+package tournament;
+
+import players.ABSearchPlayer;
+import players.Heuristic;
+import players.MCTSPlayer;
+import players.Player;
+import players.TranspositionTable;
+
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+public class Entrant {
+
+    /**
+     * A named contestant in a Tournament.
+     * Games are played on many threads at once, so the entrant creates
+     * new players for every game instead of sharing one.
+     */
+
+    public final String name;
+    private final IntFunction<Player> factory;
+
+    /**
+     * @param name the name used in the standings
+     * @param factory creates a player for the given side. Players must
+     *                not print to the console, and must not share
+     *                state that isn't thread safe.
+     */
+    public Entrant(String name, IntFunction<Player> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * Creates an entrant that plays with a fixed-depth PVS search.
+     * Each player gets its own small transposition table.
+     * @param name the name used in the standings
+     * @param depth the search depth
+     * @param heuristic creates the heuristic for each player, or null
+     *                  to use ABSearchPlayer's own estimate
+     * @return the new entrant
+     */
+    public static Entrant search(String name, int depth, Supplier<Heuristic> heuristic) {
+        return new Entrant(name, side -> {
+            ABSearchPlayer search = heuristic == null
+                    ? new ABSearchPlayer(side, depth)
+                    : new ABSearchPlayer(side, depth, heuristic.get());
+            search.setVerbose(false);
+            search.setSearchMode(ABSearchPlayer.SEARCH_PVS);
+            search.setMoveOrdering(ABSearchPlayer.ORDER_ALL);
+            search.setTranspositionTable(new TranspositionTable(1 << 16));
+            return search;
+        });
+    }
+
+    /**
+     * Creates an entrant that plays with Monte Carlo tree search.
+     * Each player is seeded by its side, so results are repeatable.
+     * @param name the name used in the standings
+     * @param iterations the number of iterations per move
+     * @return the new entrant
+     */
+    public static Entrant mcts(String name, int iterations) {
+        return new Entrant(name, side -> {
+            MCTSPlayer mcts = new MCTSPlayer(side, iterations);
+            mcts.setSeed(side);
+            return mcts;
+        });
+    }
+
+    /**
+     * @param side TileGame.PLAYER1 or TileGame.PLAYER2
+     * @return a new player for one game
+     */
+    public Player create(int side) {
+        return factory.apply(side);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,162 @@
+package tournament;
+
+import java.util.List;
+
+public class Standings {
+
+    /**
+     * The results of a Tournament: wins, draws and losses for every
+     * entrant, overall and against each opponent, and how fast the
+     * games were played.
+     */
+
+    private final List<Entrant> entrants;
+
+    // wins[a][b]: games entrant a won against entrant b
+    private final int[][] wins;
+    // draws[a][b] == draws[b][a]
+    private final int[][] draws;
+    // Games lost by playing an illegal move or no move at all
+    private final int[] forfeits;
+
+    private int games;
+    private long nanos;
+
+    Standings(List<Entrant> entrants) {
+        this.entrants = entrants;
+        int n = entrants.size();
+        this.wins = new int[n][n];
+        this.draws = new int[n][n];
+        this.forfeits = new int[n];
+    }
+
+    /*
+    Records one game. winner is a or b, or -1 for a draw.
+    forfeit is set when the loser made an illegal move.
+     */
+    void record(int a, int b, int winner, boolean forfeit) {
+        games++;
+        if (winner < 0) {
+            draws[a][b]++;
+            draws[b][a]++;
+            return;
+        }
+        int loser = winner == a ? b : a;
+        wins[winner][loser]++;
+        if (forfeit) {
+            forfeits[loser]++;
+        }
+    }
+
+    void setElapsedNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public List<Entrant> getEntrants() {
+        return entrants;
+    }
+
+    /**
+     * @return the number of games played
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * @return the wall-clock time taken to play every game, in seconds
+     */
+    public double getSeconds() {
+        return nanos / 1e9;
+    }
+
+    /**
+     * @return the number of games finished per second of wall-clock time
+     */
+    public double getGamesPerSecond() {
+        return nanos == 0 ? 0 : games / getSeconds();
+    }
+
+    public int getWins(int a, int b) {
+        return wins[a][b];
+    }
+
+    public int getDraws(int a, int b) {
+        return draws[a][b];
+    }
+
+    public int getLosses(int a, int b) {
+        return wins[b][a];
+    }
+
+    public int getWins(int a) {
+        return sum(wins[a]);
+    }
+
+    public int getDraws(int a) {
+        return sum(draws[a]);
+    }
+
+    public int getLosses(int a) {
+        int total = 0;
+        for (int[] row : wins) {
+            total += row[a];
+        }
+        return total;
+    }
+
+    /**
+     * @param a an entrant's index
+     * @return the number of games the entrant lost to an illegal move
+     */
+    public int getForfeits(int a) {
+        return forfeits[a];
+    }
+
+    /**
+     * @param a an entrant's index
+     * @return the entrant's points per game, counting a win as 1 and a draw as 1/2
+     */
+    public double getScore(int a) {
+        int played = getWins(a) + getDraws(a) + getLosses(a);
+        return played == 0 ? 0 : (getWins(a) + 0.5 * getDraws(a)) / played;
+    }
+
+    private static int sum(int[] values) {
+        int total = 0;
+        for (int value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        int width = 8;
+        for (Entrant entrant : entrants) {
+            width = Integer.max(width, entrant.name.length());
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-" + width + "s %6s %6s %6s %7s%n", "Entrant", "W", "D", "L", "Score"));
+        for (int a = 0; a < entrants.size(); a++) {
+            builder.append(String.format("%-" + width + "s %6d %6d %6d %6.1f%%", entrants.get(a).name,
+                    getWins(a), getDraws(a), getLosses(a), 100 * getScore(a)));
+            if (forfeits[a] > 0) {
+                builder.append(String.format("  (%d forfeits)", forfeits[a]));
+            }
+            builder.append(String.format("%n"));
+        }
+
+        builder.append(String.format("%n"));
+        for (int a = 0; a < entrants.size(); a++) {
+            for (int b = a + 1; b < entrants.size(); b++) {
+                builder.append(String.format("%s vs %s: +%d =%d -%d%n", entrants.get(a).name, entrants.get(b).name,
+                        getWins(a, b), getDraws(a, b), getLosses(a, b)));
+            }
+        }
+
+        builder.append(String.format("%n%d games in %.2f s (%.1f games/s)", games, getSeconds(), getGamesPerSecond()));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,278 @@
+package tournament;
+
+import players.Move;
+import players.MoveGenerator;
+import players.Player;
+import players.ScoreHeuristic;
+import records.GameRecord;
+import records.GameRecordWriter;
+import tilegame.TileGame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Tournament {
+
+    /**
+     * Plays every pair of entrants against each other on many threads
+     * at once, without printing anything while games are in progress.
+     *
+     * Each pairing plays the same set of openings, made by seeded
+     * random play, so results are repeatable. Every opening is played
+     * twice, once with each entrant moving first, so neither entrant
+     * gains from the side it plays. Games can be saved as game records,
+     * opening moves included.
+     */
+
+    public final int rows;
+    public final int cols;
+    public final int pool;
+
+    private final List<Entrant> entrants = new ArrayList<>();
+
+    /**
+     * The number of openings each pairing plays.
+     */
+    int openings = 10;
+
+    /**
+     * The number of random moves in each opening.
+     */
+    int openingPlies = 2;
+
+    long seed = 1;
+
+    /**
+     * The number of games played at once.
+     */
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Every game is added to this file as a game record, or null to
+     * keep no records.
+     */
+    File recordFile = null;
+
+    /**
+     * @param rows number of rows on the board
+     * @param cols number of columns on the board
+     * @param pool how much pool each player starts with
+     */
+    public Tournament(int rows, int cols, int pool) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+    }
+
+    public void addEntrant(Entrant entrant) {
+        entrants.add(entrant);
+    }
+
+    /**
+     * @param openings the number of openings each pairing plays, at least 1.
+     *                 Each opening is played twice.
+     */
+    public void setOpenings(int openings) {
+        if (openings < 1) {
+            throw new IllegalArgumentException("openings must be at least 1");
+        }
+        this.openings = openings;
+    }
+
+    /**
+     * @param plies the number of random moves made before the entrants take over
+     */
+    public void setOpeningPlies(int plies) {
+        if (plies < 0) {
+            throw new IllegalArgumentException("The opening plies cannot be negative");
+        }
+        this.openingPlies = plies;
+    }
+
+    /**
+     * @param seed the seed the openings are made from
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param threads the number of games played at once, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param file the file every game is added to as a game record
+     *             (see GameRecordWriter.formatOf), or null to keep no records
+     */
+    public void setRecordFile(File file) {
+        this.recordFile = file;
+    }
+
+    /**
+     * Plays every game of the tournament.
+     * @return the results
+     * @throws IOException if the game records can't be written
+     */
+    public Standings play() throws IOException {
+        if (entrants.size() < 2) {
+            throw new IllegalStateException("A tournament needs at least 2 entrants");
+        }
+        List<Entrant> players = new ArrayList<>(entrants);
+        GameRecord[] starts = createOpenings();
+
+        // Both colours of every opening, for every pairing
+        List<int[]> schedule = new ArrayList<>();
+        for (int a = 0; a < players.size(); a++) {
+            for (int b = a + 1; b < players.size(); b++) {
+                for (int o = 0; o < starts.length; o++) {
+                    schedule.add(new int[] {a, b, o});
+                    schedule.add(new int[] {b, a, o});
+                }
+            }
+        }
+
+        Standings standings = new Standings(players);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<int[]>> results = new ArrayList<>(schedule.size());
+            List<GameRecord> records = new ArrayList<>(schedule.size());
+            for (int[] game : schedule) {
+                Entrant first = players.get(game[0]);
+                Entrant second = players.get(game[1]);
+                GameRecord record = starts[game[2]].copy();
+                records.add(record);
+                results.add(executor.submit(() -> playGame(first, second, record)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                int[] result;
+                try {
+                    result = results.get(i).get();
+                } catch (Exception e) {
+                    throw new RuntimeException("Tournament game failed", e);
+                }
+                int[] game = schedule.get(i);
+                int winner = result[0] == TileGame.NO_PLAYER ? -1 : game[result[0]];
+                standings.record(game[0], game[1], winner, result[1] != 0);
+            }
+
+            if (recordFile != null) {
+                try (GameRecordWriter writer = new GameRecordWriter(recordFile,
+                        GameRecordWriter.formatOf(recordFile), true)) {
+                    for (GameRecord record : records) {
+                        writer.write(record);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        standings.setElapsedNanos(System.nanoTime() - start);
+        return standings;
+    }
+
+    /*
+    Makes the openings by random play. Moves spend about as much as an
+    even split of the pool over the board would, so neither side starts
+    out far ahead.
+     */
+    private GameRecord[] createOpenings() {
+        Random random = new Random(seed);
+        int typical = Integer.max(1, 2 * pool / (rows * cols));
+
+        GameRecord[] starts = new GameRecord[openings];
+        for (int o = 0; o < openings; o++) {
+            for (int attempt = 0; starts[o] == null; attempt++) {
+                if (attempt == 1000) {
+                    throw new IllegalStateException(String.format("Unable to make a %d ply opening for %dx%dx%d",
+                            openingPlies, rows, cols, pool));
+                }
+                TileGame game = new TileGame(rows, cols, pool);
+                GameRecord record = new GameRecord(rows, cols, pool);
+                int plies = 0;
+                while (plies < openingPlies && !game.isGameForfeitable()) {
+                    int r = random.nextInt(rows);
+                    int c = random.nextInt(cols);
+                    int value = 1 + random.nextInt(Integer.min(game.getPlayerPool(), 2 * typical));
+                    if (game.play(r, c, value)) {
+                        record.add(MoveGenerator.encode(r, c, value));
+                        plies++;
+                    }
+                }
+                if (!game.isGameForfeitable()) {
+                    starts[o] = record;
+                }
+            }
+        }
+        return starts;
+    }
+
+    /*
+    Plays one game on from an opening, adding its moves and winner to
+    the opening's record. Returns {winning side or NO_PLAYER, 1 if the
+    loser forfeited by making an illegal move}.
+     */
+    private static int[] playGame(Entrant first, Entrant second, GameRecord record) {
+        Player[] players = {first.create(TileGame.PLAYER1), second.create(TileGame.PLAYER2)};
+        TileGame game = record.replay();
+        while (!game.isGameForfeitable()) {
+            int turn = game.turn;
+            Move move = players[turn].getNextMove(game.copy());
+            if (move == null || !move.apply(game)) {
+                record.setWinner(TileGame.otherPlayer(turn));
+                return new int[] {TileGame.otherPlayer(turn), 1};
+            }
+            record.add(move);
+        }
+        record.setWinner(game.getWinner());
+        return new int[] {game.getWinner(), 0};
+    }
+
+    /**
+     * Plays ABSearchPlayer's estimate at two depths, a greedy
+     * tile-counting heuristic and MCTSPlayer against each other, and
+     * prints the standings.
+     * Usage: Tournament rows cols pool openings [plies] [seed] [threads] [records]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: Tournament rows cols pool openings [plies] [seed] [threads] [records]");
+            return;
+        }
+        Tournament tournament = new Tournament(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]));
+        tournament.setOpenings(Integer.parseInt(args[3]));
+        if (args.length > 4) {
+            tournament.setOpeningPlies(Integer.parseInt(args[4]));
+        }
+        if (args.length > 5) {
+            tournament.setSeed(Long.parseLong(args[5]));
+        }
+        if (args.length > 6) {
+            tournament.setThreads(Integer.parseInt(args[6]));
+        }
+        if (args.length > 7) {
+            tournament.setRecordFile(new File(args[7]));
+        }
+
+        tournament.addEntrant(Entrant.search("estimate-2", 2, null));
+        tournament.addEntrant(Entrant.search("estimate-3", 3, null));
+        tournament.addEntrant(Entrant.search("score-3", 3, ScoreHeuristic::new));
+        tournament.addEntrant(Entrant.mcts("mcts-10k", 10000));
+
+        System.out.println(tournament.play());
+    }
+}